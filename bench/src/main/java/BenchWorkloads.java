@@ -0,0 +1,124 @@
+import mapf.bench.Workloads;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Random;
+
+/**
+ * Implementation of the benchmark workloads, kept in the default package next to the planner it drives.
+ */
+public class BenchWorkloads implements Workloads {
+
+    // largest conflict group handed to the SAT-solver
+    private static final int GROUP = 4;
+
+    // length of the board
+    private int l;
+    // number of agents
+    private int robots;
+    // seed of the instance
+    private long seed;
+    // agents of the instance indexed by ID
+    private HashMap<Integer, Agent> agents;
+    // game holding the agents
+    private Game game;
+    // reservations of every agent's path
+    private ReservationTable table;
+    // conflict group for the SAT-solver
+    private LinkedList<Integer> group;
+    // SAT-solver for the next solve, replaced before every one
+    private SATSolve sat;
+    // independent A* path and its cost of every agent indexed by ID, given back after every A* replacement
+    private PackedPath[] paths;
+    private int[] costs;
+    // agent used by the next A* or reservation replacement
+    private int next;
+
+    @Override
+    public void setup(int gridLength, double density, long seed) throws Exception {
+        this.l = gridLength;
+        this.robots = Math.max(2, (int) (gridLength * gridLength * density));
+        this.seed = seed;
+        reset();
+        this.table = new ReservationTable(this.l);
+        this.paths = new PackedPath[this.robots + 1];
+        this.costs = new int[this.robots + 1];
+        for (Agent a : this.agents.values()) {
+            this.table.put(a.getID(), a.getPath());
+            this.paths[a.getID()] = a.getPath();
+            this.costs[a.getID()] = a.getPathCost();
+        }
+        this.group = new LinkedList<>();
+        for (int id = 1; id <= Math.min(GROUP, this.robots); id++)
+            this.group.add(id);
+        freshSolver();
+        this.next = 0;
+    }
+
+    // advances to the next agent in ID order
+    private Agent nextAgent() {
+        this.next = this.next % this.robots + 1;
+        return this.agents.get(this.next);
+    }
+
+    @Override
+    public int aStar(boolean withReservations) {
+        Agent a = nextAgent();
+        a.AStar(withReservations ? this.table : null, 2 * this.l);
+        int cost = a.getPathCost();
+        // the reservation table still holds the old path, so every search runs against the same instance
+        a.setPath(this.paths[a.getID()]);
+        a.setPathCost(this.costs[a.getID()]);
+        return cost;
+    }
+
+    @Override
+    public int detectAll() {
+        ReservationTable t = new ReservationTable(this.l);
+        for (Agent a : this.agents.values())
+            t.put(a.getID(), a.getPath());
+        return t.conflicts().all().size();
+    }
+
+    @Override
+    public int detectNext() {
+        Agent a = nextAgent();
+        PackedPath p = this.table.get(a.getID());
+        this.table.put(a.getID(), p);
+        ConflictIndex.Conflict c = this.table.conflicts().next();
+        return c == null ? -1 : c.time;
+    }
+
+    @Override
+    public int encode() {
+        return new SATSolve(2 * this.l, this.l).encode(this.group, this.agents);
+    }
+
+    @Override
+    public void freshSolver() {
+        this.sat = new SATSolve(2 * this.l, this.l);
+    }
+
+    @Override
+    public int solve() throws Exception {
+        return this.sat.solve(this.group, this.agents, null);
+    }
+
+    @Override
+    public void reset() throws Exception {
+        Random rng = new Random(this.seed);
+        this.agents = new HashMap<>();
+        this.game = new Game(this.l, 2 * this.l);
+        for (int a = 1; a <= this.robots; a++) {
+            Agent agent = new Agent(a, this.l, rng);
+            while (!this.game.add(agent))
+                agent = new Agent(a, this.l, rng);
+            this.agents.put(a, agent);
+        }
+    }
+
+    @Override
+    public boolean run() throws Exception {
+        return this.game.run();
+    }
+}
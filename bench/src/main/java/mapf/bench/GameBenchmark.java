@@ -0,0 +1,40 @@
+package mapf.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end Game.run on a fresh copy of the instance every invocation.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class GameBenchmark {
+
+    @State(Scope.Thread)
+    public static class FreshGame extends WorkloadState {
+
+        @Setup(Level.Invocation)
+        public void rebuild() throws Exception {
+            this.workloads.reset();
+        }
+    }
+
+    @Benchmark
+    public boolean run(FreshGame state) throws Exception {
+        return state.workloads.run();
+    }
+}
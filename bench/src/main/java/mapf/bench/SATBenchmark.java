@@ -0,0 +1,46 @@
+package mapf.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clause generation for a conflict group compared to a whole solve on a new SAT-solver every invocation, an
+ * incremental solver that already solved the group would answer from what it learnt.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SATBenchmark {
+
+    @State(Scope.Thread)
+    public static class ColdSolver extends WorkloadState {
+
+        @Setup(Level.Invocation)
+        public void rebuild() {
+            this.workloads.freshSolver();
+        }
+    }
+
+    @Benchmark
+    public int encode(WorkloadState state) {
+        return state.workloads.encode();
+    }
+
+    @Benchmark
+    public int solve(ColdSolver state) throws Exception {
+        return state.workloads.solve();
+    }
+}
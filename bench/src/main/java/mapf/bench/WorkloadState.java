@@ -0,0 +1,31 @@
+package mapf.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A random instance shared by the benchmarks, parameterized by grid size, agent density and seed.
+ */
+@State(Scope.Thread)
+public class WorkloadState {
+
+    @Param({"16", "32", "64"})
+    public int gridLength;
+
+    @Param({"0.02", "0.05"})
+    public double density;
+
+    @Param({"1"})
+    public long seed;
+
+    public Workloads workloads;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.workloads = Workloads.load();
+        this.workloads.setup(this.gridLength, this.density, this.seed);
+    }
+}
@@ -0,0 +1,43 @@
+package mapf.bench;
+
+/**
+ * The operations measured by the benchmarks. The planner lives in the default package, which classes in a named
+ * package cannot refer to, so the benchmarks reach it through this interface and an implementation in the default
+ * package that is loaded by name.
+ */
+public interface Workloads {
+
+    // builds a random instance with gridLength * gridLength * density agents from a seed
+    void setup(int gridLength, double density, long seed) throws Exception;
+
+    // replans the next agent with A*, against the reservations of all other agents if withReservations is set,
+    // returns the path cost
+    int aStar(boolean withReservations);
+
+    // reserves every agent's path in a new reservation table and lists all collisions, returns their number
+    int detectAll();
+
+    // replaces the reservation of the next agent and looks up the earliest collision, returns its time step
+    int detectNext();
+
+    // encodes the SAT formula of the conflict group from scratch, returns the number of clauses
+    int encode();
+
+    // builds a new SAT-solver for the conflict group, so the next solve does not start from the clauses and learnt
+    // state of an earlier one
+    void freshSolver();
+
+    // encodes and solves the conflict group on the SAT-solver of the last freshSolver, returns the group's makespan
+    int solve() throws Exception;
+
+    // rebuilds the instance so that run starts from the independent A* paths again
+    void reset() throws Exception;
+
+    // solves the whole instance with Game.run
+    boolean run() throws Exception;
+
+    // loads the implementation from the default package
+    static Workloads load() throws ReflectiveOperationException {
+        return (Workloads) Class.forName("BenchWorkloads").getDeclaredConstructor().newInstance();
+    }
+}
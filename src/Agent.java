@@ -1,6 +1,5 @@
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Created by Eric He on 4/24/17.
@@ -10,6 +9,14 @@ import java.util.PriorityQueue;
  */
 
 public class Agent {
+
+    // cells an agent may not enter, time steps are indexed from 0 like the cells of a path
+    public interface Blocked {
+        boolean isBlocked(int time, int vertex);
+    }
+
+    // number of expanded nodes between two checks of the deadline
+    private static final int DEADLINE_CHECK = 256;
     // diagonal costs
     private static final int DCOST = 14;
     // vertical and horizontal costs
@@ -17,14 +24,14 @@ public class Agent {
 
     // identifier
     private int id;
-    // gridLength
-    private int l;
+    // board the agent moves on, shared with the rest of the game
+    private Grid grid;
     // start position
     public int si, sj;
     // end position
     private int ei, ej;
     // path for independent A*
-    private ArrayList<Cell> path;
+    private PackedPath path;
     // if the path cost is correct
     private boolean correctCost;
     // cost of current path
@@ -34,10 +41,15 @@ public class Agent {
     // determine if not merged
     private boolean single;
 
-    // simple constructor
+    // simple constructor on an obstacle-free l x l board
     public Agent(int id, int l, int si, int sj, int ei, int ej) {
+        this(id, Grid.open(l), si, sj, ei, ej);
+    }
+
+    // agent on a grid, starting and ending at cells of the grid that can be entered
+    public Agent(int id, Grid grid, int si, int sj, int ei, int ej) {
         this.id = id;
-        this.l = l;
+        this.grid = grid;
         this.si = si;
         this.sj = sj;
         this.ei = ei;
@@ -51,16 +63,12 @@ public class Agent {
 
     // random agent
     public Agent(int id, int l) {
-        this.id = id;
-        this.l = l;
-        this.si = (int) (Math.random() * l);
-        this.sj = (int) (Math.random() * l);
-        this.ei = (int) (Math.random() * l);
-        this.ej = (int) (Math.random() * l);
-        this.single = true;
-        this.pathLength = -1;
-        AStar(null);
-        this.correctCost = true;
+        this(id, l, ThreadLocalRandom.current());
+    }
+
+    // random agent drawn from a given random number generator, so instances can be reproduced
+    public Agent(int id, int l, Random rng) {
+        this(id, l, rng.nextInt(l), rng.nextInt(l), rng.nextInt(l), rng.nextInt(l));
     }
 
     // returns the id of a robot
@@ -81,12 +89,15 @@ public class Agent {
     public int getEJ() { return this.ej; }
 
     // returns orig A* path of robot
-    public ArrayList<Cell> getPath() {
+    public PackedPath getPath() {
         return this.path;
     }
 
     // sets a path for the robot
-    public void setPath(ArrayList<Cell> c) { this.path = c; }
+    public void setPath(PackedPath c) {
+        this.path = c;
+        this.pathLength = c.size();
+    }
 
     // returns the path cost
     public int getPathCost() {
@@ -107,6 +118,12 @@ public class Agent {
     // sets a robot to not single
     public void unsingle() { this.single = false; }
 
+    // sets a robot back to single after it was planned on its own again
+    public void resingle() {
+        this.single = true;
+        this.correctCost = true;
+    }
+
     // return whether a cost is correct
     public boolean isCostCorrect() { return this.correctCost; }
 
@@ -116,144 +133,201 @@ public class Agent {
         setPathCost(-1);
     }
 
-    // helper to perform A* updates
-    private void checkAndUpdateCost(Cell current, Cell t, int cost, PriorityQueue<Cell> open, boolean[][] closed, HashMap<Integer, ArrayList<Cell>> cat){
-        if(t == null || closed[t.i][t.j]) return;
-        int t_final_cost = t.heuristicCost + cost;
-        boolean inOpen = open.contains(t);
-        if(!inOpen || t_final_cost < t.finalCost){
-            if (cat == null || !inCAT(cat, current.distance + 1, t.i, t.j)) {
-                t.finalCost = t_final_cost;
-                t.parent = current;
-                t.distance = current.distance + 1;
-                if (!inOpen) open.add(t);
-            }
-        }
+    // moves the agent to a new start position, its path is left as it is until the next search
+    public void setStart(int si, int sj) {
+        this.si = si;
+        this.sj = sj;
+    }
+
+    // gives the agent a new goal, its path is left as it is until the next search
+    public void setGoal(int ei, int ej) {
+        this.ei = ei;
+        this.ej = ej;
+    }
+
+    // returns the board the agent moves on
+    public Grid getGrid() {
+        return this.grid;
     }
 
     // helper to check collision-avoidance table
-    public boolean inCAT(HashMap<Integer, ArrayList<Cell>> cat, int timestep, int x, int y) {
-        for (Integer id : cat.keySet()) {
-            if (id != this.id) {
-                ArrayList<Cell> p = cat.get(id);
-                if (p.size() >= timestep && p.get(timestep - 1).toString().equals("[" + x + ", " + y + "]")) return true;
-            }
-        }
-        return false;
+    public boolean inCAT(ReservationTable cat, int timestep, int x, int y) {
+        return cat.isReservedByOther(timestep - 1, x, y, this.id);
     }
 
-    // runs A* and sets the path and pathCost instance variables
-    public void AStar(HashMap<Integer, ArrayList<Cell>> cat){
-        //Reset
-        Cell [][] grid = new Cell[l][l];
-        boolean [][] closed = new boolean[l][l];
-        PriorityQueue<Cell> open = new PriorityQueue<>((Object o1, Object o2) -> {
-            Cell c1 = (Cell)o1;
-            Cell c2 = (Cell)o2;
-
-            return c1.finalCost < c2.finalCost ? -1 :
-                    c1.finalCost > c2.finalCost ? 1 : 0;
-        });
-
-        for(int i = 0; i < l; ++i) {
-            for(int j = 0; j < l; ++j) {
-                grid[i][j] = new Cell(i, j);
-                // heuristic function, could be changed but admissible for now
-                grid[i][j].heuristicCost = Math.abs(i - ei) + Math.abs(j - ej);
-            }
-        }
+    // cost of a move between two neighboring vertices of a grid
+    static int moveCost(Grid grid, int from, int to) {
+        return grid.x(from) == grid.x(to) || grid.y(from) == grid.y(to) ? VCOST : DCOST;
+    }
+
+    // runs A* and sets the path and pathCost instance variables, a collision avoidance table limits the path to
+    // twice the longer side of the board
+    public void AStar(ReservationTable cat) {
+        AStar(cat, 2 * Math.max(grid.width(), grid.height()));
+    }
+
+    // runs A* and sets the path and pathCost instance variables, if a collision avoidance table is given the search
+    // runs over space and time so the agent can wait for others, with paths no longer than horizon
+    public void AStar(ReservationTable cat, int horizon) {
+        AStar(cat, horizon, Metrics.NONE);
+    }
+
+    // runs A* like above and reports its node expansions and collision avoidance table lookups to metrics
+    public void AStar(ReservationTable cat, int horizon, Metrics metrics) {
+        AStar(cat, horizon, metrics, Deadline.NONE);
+    }
+
+    // runs A* like above and gives up once the deadline has passed, setting the path cost to -1 as if there was no
+    // path, callers tell the two apart by checking the deadline
+    public void AStar(ReservationTable cat, int horizon, Metrics metrics, Deadline deadline) {
+        if (cat == null) spatialAStar(metrics, deadline);
+        else spaceTimeAStar((time, v) -> cat.isReservedByOther(time, v, this.id), horizon, false, metrics, deadline);
+    }
+
+    // runs A* over space and time around arbitrary blocked cells, such as the constraints of a conflict-based search,
+    // with paths no longer than horizon, giving up once the deadline has passed
+    public void AStar(Blocked blocked, int horizon, Metrics metrics, Deadline deadline) {
+        spaceTimeAStar(blocked, horizon, false, metrics, deadline);
+    }
+
+    // runs A* over space and time that only looks window time steps ahead, cells are blocked up to and including time
+    // step window and the cost of the rest of the way is taken to be the distance to the goal. The path ends at the goal
+    // if the agent can stay there until the window closes and at time step window otherwise, in which case the path
+    // cost only covers the steps inside the window (Li et al., "Lifelong Multi-Agent Path Finding in Large-Scale
+    // Warehouses", AAAI 2021)
+    public void windowedAStar(Blocked blocked, int window, Metrics metrics, Deadline deadline) {
+        spaceTimeAStar(blocked, window + 1, true, metrics, deadline);
+    }
 
-        grid[si][sj].finalCost = 0; // initialize starting node
-        grid[si][sj].distance = 1;
+    // A* over the cells of the board only
+    private void spatialAStar(Metrics metrics, Deadline deadline) {
+        // reuse the search arrays of this thread instead of allocating a grid for every search
+        SearchContext ctx = SearchContext.get(grid.cells());
+        ctx.begin();
+        int goal = grid.vertex(ei, ej);
+        int source = grid.vertex(si, sj);
+        // exact costs to the goal, shared with every other search towards it
+        int[] h = HeuristicCache.shared().costs(grid, goal);
+        if (h[source] == HeuristicCache.UNREACHABLE) {
+            this.pathCost = -1;
+            return;
+        }
+        int expanded = 0;
 
         // add the start location to open list.
-        open.add(grid[si][sj]);
+        ctx.push(source, 0, h[source], -1, 1);
 
         // performs the A* search
-        Cell current;
-        while(true) {
-            current = open.poll();
-            if(current == null) break;
-            closed[current.i][current.j] = true;
-
-            if(current.equals(grid[ei][ej])){
+        int found = -1;
+        while (true) {
+            int current = ctx.poll();
+            if (current == -1) break;
+            ctx.close(current);
+            if (++expanded % DEADLINE_CHECK == 0 && deadline.isExpired()) break;
+
+            if (current == goal) {
+                found = current;
                 break;
             }
 
-            Cell t;
-            // casework to check edges
-            if(current.i - 1 >= 0){
-                t = grid[current.i - 1][current.j];
-                if (cat == null || !inCAT(cat, t.distance + 1, current.i - 1, current.j))
-                    checkAndUpdateCost(current, t, current.finalCost + VCOST, open, closed, cat);
-
-                if(current.j - 1 >= 0){
-                    t = grid[current.i - 1][current.j - 1];
-                    if (cat == null || !inCAT(cat, t.distance + 1, current.i - 1, current.j - 1))
-                        checkAndUpdateCost(current, t, current.finalCost + DCOST, open, closed, cat);
-                }
-
-                if(current.j + 1 < grid[0].length) {
-                    t = grid[current.i - 1][current.j + 1];
-                    if (cat == null || !inCAT(cat, t.distance + 1, current.i - 1, current.j + 1))
-                        checkAndUpdateCost(current, t, current.finalCost + DCOST, open, closed, cat);
-                }
-            }
-
-            if(current.j - 1 >= 0){
-                t = grid[current.i][current.j - 1];
-                if (cat == null || !inCAT(cat, t.distance + 1, current.i, current.j - 1))
-                    checkAndUpdateCost(current, t, current.finalCost + VCOST, open, closed, cat);
+            int nextDistance = ctx.distance(current) + 1;
+            // visit the neighbors that can be entered
+            for (int k = grid.firstNeighbor(current), end = grid.endNeighbor(current); k < end; k++) {
+                int t = grid.neighbor(k);
+                if (ctx.isClosed(t)) continue;
+                int g = ctx.g(current) + moveCost(grid, current, t);
+                if (!ctx.isSeen(t) || g < ctx.g(t))
+                    ctx.push(t, g, g + h[t], current, nextDistance);
             }
+        }
+        metrics.add(Metrics.Counter.NODE_EXPANSIONS, expanded);
+        if (found != -1) setSearchPath(ctx, found, false);
+        else this.pathCost = -1;
+    }
 
-            if(current.j + 1 < grid[0].length){
-                t = grid[current.i][current.j + 1];
-                if (cat == null || !inCAT(cat, t.distance + 1, current.i, current.j + 1))
-                    checkAndUpdateCost(current, t, current.finalCost + VCOST, open, closed, cat);
+    // A* over (cell, timestep) pairs that avoids the blocked cells, waiting in place costs nothing so
+    // the cost found is the optimal one whenever a path of at most horizon steps exists, among paths of equal cost the
+    // one that arrives first is returned. A windowed search also ends at any cell once the path is horizon cells long
+    private void spaceTimeAStar(Blocked blocked, int horizon, boolean windowed, Metrics metrics, Deadline deadline) {
+        if (horizon < 1) throw new IllegalArgumentException("horizon " + horizon + " is less than 1");
+        // node keys hold the timestep - 1 in the high and the vertex in the low 32 bits, the distance of a node is its
+        // timestep. Only the nodes the search reaches get slots, the time-expanded graph can be far too large to
+        // index densely
+        SearchContext ctx = SearchContext.keyed();
+        ctx.begin();
+        int goal = grid.vertex(ei, ej);
+        int source = grid.vertex(si, sj);
+        int[] h = HeuristicCache.shared().costs(grid, goal);
+        if (h[source] == HeuristicCache.UNREACHABLE) {
+            this.pathCost = -1;
+            return;
+        }
+        long span = horizon + 1;
+        int expanded = 0, probes = 0;
+
+        ctx.push(ctx.add(source), 0, priority(0, h[source], 1, span, windowed), -1, 1);
+
+        int found = -1;
+        while (true) {
+            int current = ctx.poll();
+            if (current == -1) break;
+            ctx.close(current);
+            if (++expanded % DEADLINE_CHECK == 0 && deadline.isExpired()) break;
+
+            int v = (int) ctx.key(current);
+            int distance = ctx.distance(current);
+            if ((v == goal && (!windowed || canStay(blocked, goal, distance, horizon))) ||
+                    (windowed && distance == horizon)) {
+                found = current;
+                break;
             }
 
-            if(current.i + 1 < grid.length){
-                t = grid[current.i + 1][current.j];
-                if (cat == null || !inCAT(cat, t.distance + 1, current.i + 1, current.j))
-                    checkAndUpdateCost(current, t, current.finalCost + VCOST, open, closed, cat);
-
-                if(current.j - 1 >= 0){
-                    t = grid[current.i + 1][current.j - 1];
-                    if (cat == null || !inCAT(cat, t.distance + 1, current.i + 1, current.j - 1))
-                        checkAndUpdateCost(current, t, current.finalCost + DCOST, open, closed, cat);
-                }
-
-                if(current.j + 1 < grid[0].length){
-                    t = grid[current.i + 1][current.j + 1];
-                    if (cat == null || !inCAT(cat, t.distance + 1, current.i + 1, current.j + 1))
-                        checkAndUpdateCost(current, t, current.finalCost + DCOST, open, closed, cat);
-                }
+            int nextDistance = distance + 1;
+            if (nextDistance > horizon) continue;
+            long layer = (long) (nextDistance - 1) << 32;
+            // visit the neighbors that can be entered, index first - 1 stands for waiting in place
+            int first = grid.firstNeighbor(v);
+            for (int k = first - 1, end = grid.endNeighbor(v); k < end; k++) {
+                int u = k < first ? v : grid.neighbor(k);
+                int t = ctx.find(layer + u);
+                if (t != -1 && ctx.isClosed(t)) continue;
+                probes++;
+                if (blocked.isBlocked(nextDistance - 1, u)) continue;
+                int g = ctx.g(current) + (u == v ? 0 : moveCost(grid, v, u));
+                if (t == -1) t = ctx.add(layer + u);
+                else if (ctx.isSeen(t) && g >= ctx.g(t)) continue;
+                ctx.push(t, g, priority(g, h[u], nextDistance, span, windowed), current, nextDistance);
             }
         }
+        metrics.add(Metrics.Counter.NODE_EXPANSIONS, expanded);
+        metrics.add(Metrics.Counter.CAT_PROBES, probes);
+        if (found != -1) setSearchPath(ctx, found, true);
+        else this.pathCost = -1;
+    }
 
-        int cost = 0;
-        if(closed[ei][ej]) {
-            // determine path length and cost
-            Cell c = grid[ei][ej];
-            this.pathLength = c.distance;
-            path = new ArrayList<>(this.pathLength);
-            for (int i = 0; i < this.pathLength; i++)
-                path.add(null);
-
-            int count = c.distance;
-            path.set(count - 1, c);
-            // backtrack to calculate path
-            while(c.parent != null) {
-                count--;
-                int score = Math.abs(c.i - c.parent.i) + Math.abs(c.j - c.parent.j);
-                if (score == 1) cost += VCOST;
-                else if (score == 2) cost += DCOST;
-                path.set(count - 1, c.parent);
-                c = c.parent;
-            }
-            this.pathCost = cost;
-        } else {
-            this.pathCost = -1;
-        }
+    // orders the nodes of a space-time search by estimated cost, ties are broken in favor of earlier timesteps. Beyond
+    // the window of a windowed search waiting in place looks as good as moving on, since waits cost nothing, so ties
+    // are broken in favor of nodes closer to the goal instead
+    private static long priority(int g, int h, int distance, long span, boolean windowed) {
+        if (windowed) return ((long) (g + h) << 31) + h;
+        return (g + h) * span + distance;
+    }
+
+    // checks if an agent can stay at a vertex from time step from up to but not including time step to
+    private static boolean canStay(Blocked blocked, int v, int from, int to) {
+        for (int t = from; t < to; t++)
+            if (blocked.isBlocked(t, v)) return false;
+        return true;
+    }
+
+    // sets the path, its length and its cost by backtracking from a node of the last search, the nodes of a keyed
+    // search are slots whose keys hold the vertex in their low 32 bits
+    private void setSearchPath(SearchContext ctx, int node, boolean keyed) {
+        this.pathLength = ctx.distance(node);
+        this.pathCost = ctx.g(node);
+        int[] v = new int[this.pathLength];
+        for (int n = node; n != -1; n = ctx.parent(n))
+            v[ctx.distance(n) - 1] = keyed ? (int) ctx.key(n) : n;
+        path = new PackedPath(grid, v);
     }
-}
\ No newline at end of file
+}
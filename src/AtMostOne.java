@@ -0,0 +1,137 @@
+import org.sat4j.core.VecInt;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+
+/**
+ * Encodings of the constraint "at most one of these literals is true". The pairwise encoding needs no extra
+ * variables but a quadratic number of clauses, the others introduce auxiliary variables to get a linear number of
+ * clauses. Each encoding takes the next unused variable and returns the next unused variable after its auxiliaries.
+ *
+ * The sequential counter is from "Towards an Optimal CNF Encoding of Boolean Cardinality Constraints" by Sinz in 2005,
+ * the commander encoding from "Efficient CNF Encoding for Selecting 1 from N Objects" by Klieber and Kwon in 2007 and
+ * the ladder encoding from "A New Encoding of AllDifferent into SAT" by Gent and Nightingale in 2004.
+ */
+
+public enum AtMostOne {
+
+    // every pair of literals gets a clause
+    PAIRWISE {
+        int encode(ISolver solver, int[] lits, int from, int to, int nextVar) throws ContradictionException {
+            for (int i = from; i < to - 1; i++)
+                for (int j = i + 1; j < to; j++)
+                    solver.addClause(new VecInt(new int[]{-lits[i], -lits[j]}));
+            return nextVar;
+        }
+    },
+
+    // auxiliary s_i is true if one of the first i literals is true
+    SEQUENTIAL {
+        int encode(ISolver solver, int[] lits, int from, int to, int nextVar) throws ContradictionException {
+            int n = to - from;
+            int s = nextVar;
+            solver.addClause(new VecInt(new int[]{-lits[from], s}));
+            for (int i = 1; i < n - 1; i++) {
+                int x = lits[from + i];
+                solver.addClause(new VecInt(new int[]{-x, s + i}));
+                solver.addClause(new VecInt(new int[]{-(s + i - 1), s + i}));
+                solver.addClause(new VecInt(new int[]{-x, -(s + i - 1)}));
+            }
+            solver.addClause(new VecInt(new int[]{-lits[to - 1], -(s + n - 2)}));
+            return nextVar + n - 1;
+        }
+    },
+
+    // literals are split into groups of three, a commander per group is implied by its literals and the commanders
+    // are recursively constrained
+    COMMANDER {
+        int encode(ISolver solver, int[] lits, int from, int to, int nextVar) throws ContradictionException {
+            int n = to - from;
+            int groups = (n + GROUP - 1) / GROUP;
+            int[] commanders = new int[groups];
+            for (int g = 0; g < groups; g++) {
+                int c = nextVar++;
+                commanders[g] = c;
+                int start = from + g * GROUP;
+                int end = Math.min(start + GROUP, to);
+                PAIRWISE.encode(solver, lits, start, end, nextVar);
+                int[] some = new int[end - start + 1];
+                some[0] = -c;
+                for (int i = start; i < end; i++) {
+                    solver.addClause(new VecInt(new int[]{-lits[i], c}));
+                    some[i - start + 1] = lits[i];
+                }
+                solver.addClause(new VecInt(some));
+            }
+            return add(solver, commanders, nextVar, this);
+        }
+    },
+
+    // auxiliary y_i is true if the chosen literal comes after the first i, the y form a ladder
+    LADDER {
+        int encode(ISolver solver, int[] lits, int from, int to, int nextVar) throws ContradictionException {
+            int n = to - from;
+            int y = nextVar - 1;
+            for (int i = 1; i < n - 1; i++)
+                solver.addClause(new VecInt(new int[]{-(y + i + 1), y + i}));
+            solver.addClause(new VecInt(new int[]{-lits[from], -(y + 1)}));
+            for (int i = 1; i < n - 1; i++) {
+                int x = lits[from + i];
+                solver.addClause(new VecInt(new int[]{-x, y + i}));
+                solver.addClause(new VecInt(new int[]{-x, -(y + i + 1)}));
+            }
+            solver.addClause(new VecInt(new int[]{-lits[to - 1], y + n - 1}));
+            return nextVar + n - 1;
+        }
+    };
+
+    // size of a commander group
+    private static final int GROUP = 3;
+    // below this many literals the pairwise encoding is the smallest one
+    private static final int SMALL = 5;
+
+    // adds the clauses for lits[from, to) using the variables from nextVar onwards, returns the next unused variable
+    abstract int encode(ISolver solver, int[] lits, int from, int to, int nextVar) throws ContradictionException;
+
+    // returns the encoding that add actually uses for n literals
+    private static AtMostOne effective(int n, AtMostOne encoding) {
+        return n < SMALL ? PAIRWISE : encoding;
+    }
+
+    // returns the number of auxiliary variables add introduces for n literals
+    public static int variables(int n, AtMostOne encoding) {
+        if (n < 2) return 0;
+        switch (effective(n, encoding)) {
+            case SEQUENTIAL:
+            case LADDER:
+                return n - 1;
+            case COMMANDER:
+                int groups = (n + GROUP - 1) / GROUP;
+                return groups + variables(groups, encoding);
+            default:
+                return 0;
+        }
+    }
+
+    // returns the number of clauses add produces for n literals
+    public static int clauses(int n, AtMostOne encoding) {
+        if (n < 2) return 0;
+        switch (effective(n, encoding)) {
+            case SEQUENTIAL:
+            case LADDER:
+                return 3 * n - 4;
+            case COMMANDER:
+                int groups = (n + GROUP - 1) / GROUP;
+                int last = n - (groups - 1) * GROUP;
+                int perGroup = GROUP * (GROUP - 1) / 2 + GROUP + 1;
+                return (groups - 1) * perGroup + last * (last - 1) / 2 + last + 1 + clauses(groups, encoding);
+            default:
+                return n * (n - 1) / 2;
+        }
+    }
+
+    // adds the constraint that at most one of lits is true with an encoding, returns the next unused variable
+    public static int add(ISolver solver, int[] lits, int nextVar, AtMostOne encoding) throws ContradictionException {
+        if (lits.length < 2) return nextVar;
+        return effective(lits.length, encoding).encode(solver, lits, 0, lits.length, nextVar);
+    }
+}
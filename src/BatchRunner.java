@@ -0,0 +1,120 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs Games on MovingAI scenarios with a growing number of agents: the first start agents of a scenario, then
+ * start + step, and so on until max agents or the end of the scenario. A scenario is played on a single Game, every
+ * count adds the next agents to the plan of the last one and repairs it, so the time of a count is that of adding
+ * step agents to a fleet that is already planned. Entries the game rejects are skipped and reported on standard error.
+ * The lines up to max agents are read before the first run, the default bound depends on them, and the map of a
+ * scenario is parsed once for all of them.
+ *
+ * java BatchRunner [--maps dir] [--start k] [--step k] [--max k] [--bound b] [--engine ID_SAT|ID_CBS|CBS]
+ *                   [--deadline ms] [--metrics file] scenario...
+ *
+ * A map is looked up in the maps directory if one is given and next to its scenario otherwise. Prints one line per
+ * run with the scenario, the number of agents, whether the instance was solved, its makespan and the time taken.
+ * With a deadline a run gives up after that many milliseconds and then counts as not solved.
+ */
+
+public class BatchRunner {
+
+    // directory holding the maps, null to look next to the scenarios
+    private Path maps;
+    // number of agents of the first run of a scenario
+    private int start = 1;
+    // agents added from one run to the next
+    private int step = 1;
+    // largest number of agents
+    private int max = Integer.MAX_VALUE;
+    // makespan bound, 0 to derive it from the entries of each scenario
+    private int bound = 0;
+    // how every game is solved
+    private Game.Engine engine = Game.Engine.ID_SAT;
+    // milliseconds a run may take, 0 for no limit
+    private long deadline = 0;
+    // metrics of every run, null if they are not recorded
+    private List<RunMetrics> runs;
+
+    // finds the map a scenario refers to
+    private Path mapOf(Path scenario, MovingAI.Entry e) {
+        Path name = Paths.get(e.map);
+        if (this.maps != null) return this.maps.resolve(name.getFileName());
+        Path dir = scenario.toAbsolutePath().getParent();
+        Path p = dir.resolve(name);
+        return Files.exists(p) ? p : dir.resolve(name.getFileName());
+    }
+
+    // runs every agent count of a scenario on one game, adding the agents of each count to the plan of the last one
+    private void run(Path scenario) throws Exception {
+        try (ScenarioReader reader = MovingAI.scenario(scenario)) {
+            ArrayList<MovingAI.Entry> entries = new ArrayList<>();
+            while (entries.size() < this.max && reader.hasNext()) entries.add(reader.next());
+            if (entries.isEmpty()) return;
+            Grid grid = MovingAI.map(mapOf(scenario, entries.get(0)));
+            Game g = new Game(grid, this.bound > 0 ? this.bound : defaultBound(grid, entries));
+            g.setEngine(this.engine);
+            int next = 0, agents = 0;
+            for (int k = this.start; k <= this.max; k += this.step) {
+                // an entry the game rejects, such as one whose start is its goal, is skipped and the next one taken
+                while (agents < k) {
+                    if (next == entries.size()) {
+                        if (!reader.hasNext()) break;
+                        entries.add(reader.next());
+                    }
+                    MovingAI.Entry e = entries.get(next++);
+                    if (g.add(new Agent(next, grid, e.sx, e.sy, e.gx, e.gy))) agents++;
+                    else System.err.println(scenario + ": skipped entry " + next + " from (" + e.sx + ", " + e.sy +
+                            ") to (" + e.gx + ", " + e.gy + ")");
+                }
+                if (agents < k) break;
+                if (this.runs != null) {
+                    RunMetrics m = new RunMetrics(scenario.getFileName() + "/" + k);
+                    g.setMetrics(m);
+                    this.runs.add(m);
+                }
+                Deadline d = this.deadline > 0 ? Deadline.after(this.deadline) : Deadline.NONE;
+                long startTime = System.currentTimeMillis();
+                boolean solved = g.repair(d).isSolved();
+                long endTime = System.currentTimeMillis();
+                System.out.println(scenario + "," + k + "," + solved + "," + g.getMPL() + "," + (endTime - startTime));
+            }
+        }
+    }
+
+    // returns the makespan bound of a scenario when none is given: twice the cells of the longest optimal path among
+    // the first max entries, so the agents have room to wait for each other, and at least twice the longer side of the
+    // map. An octile move is never shorter than 1, so an optimal path of length d has at most ceil(d) + 1 cells
+    private static int defaultBound(Grid grid, List<MovingAI.Entry> entries) {
+        double longest = 0;
+        for (MovingAI.Entry e : entries) longest = Math.max(longest, e.optimal);
+        return Math.max(2 * Math.max(grid.width(), grid.height()), 2 * ((int) Math.ceil(longest) + 1));
+    }
+
+    public static void main(String[] args) throws Exception {
+        BatchRunner runner = new BatchRunner();
+        String metricsFile = null;
+        ArrayList<Path> scenarios = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--maps": runner.maps = Paths.get(args[++i]); break;
+                case "--start": runner.start = Integer.parseInt(args[++i]); break;
+                case "--step": runner.step = Integer.parseInt(args[++i]); break;
+                case "--max": runner.max = Integer.parseInt(args[++i]); break;
+                case "--bound": runner.bound = Integer.parseInt(args[++i]); break;
+                case "--engine": runner.engine = Game.Engine.valueOf(args[++i]); break;
+                case "--deadline": runner.deadline = Long.parseLong(args[++i]); break;
+                case "--metrics": metricsFile = args[++i]; break;
+                default: scenarios.add(Paths.get(args[i]));
+            }
+        }
+        if (metricsFile != null) runner.runs = new ArrayList<>();
+        System.out.println("scenario,agents,solved,makespan,ms");
+        for (Path s : scenarios)
+            runner.run(s);
+        if (metricsFile != null) RunMetrics.write(runner.runs, metricsFile);
+    }
+}
@@ -0,0 +1,312 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+
+/**
+ * Conflict-based search, from "Conflict-Based Search for Optimal Multi-Agent Pathfinding" by Sharon, Stern, Felner
+ * and Sturtevant in 2015, as an alternative to the SAT-solver for replanning a group of agents. The high level searches
+ * a tree of constraints "agent a may not be at vertex v at time t", ordered by the sum of the path costs, and the low
+ * level is the space-time A* of Agent run around the constraints of its node and the reservations of every agent
+ * outside of the group.
+ *
+ * Two improvements can be switched on and off. Bypassing, from "Don't Split, Try To Work It Out: Bypassing Conflicts
+ * in Multi-Agent Pathfinding" by Boyarski et al. in 2015, adopts a child's path into its parent instead of splitting
+ * when it has the same cost and fewer conflicts. Prioritizing, from "ICBS: Improved Conflict-Based Search Algorithm
+ * for Multi-Agent Pathfinding" by Boyarski et al. in 2015, splits on a cardinal conflict, one where both children cost
+ * more, before a semi-cardinal and before any other one. Whether a conflict is cardinal is found by generating its
+ * children rather than by building MDDs, so only the first PRIORITIZE_LIMIT conflicts of a node are classified. The
+ * low level of an agent only depends on the constraints on that agent, so its results are remembered for the length of
+ * a call and the children generated while classifying, bypassing and splitting never search the same constraints twice.
+ *
+ * Agents leave the board once they reach the end of their path, so only vertex collisions while both agents are on
+ * the board are conflicts, the same as for the collision avoidance table.
+ */
+
+public class CBS {
+
+    // most conflicts of a node that are classified when prioritizing
+    private static final int PRIORITIZE_LIMIT = 4;
+
+    // low-level result of an agent under a set of constraints, equal to any other one for the same agent and
+    // constraints
+    private static class Replan {
+        // index of the agent and its sorted constraints
+        final int agent;
+        final long[] constraints;
+        // hash of agent and constraints
+        final int hash;
+        // path found and its cost, null and -1 if there is none within the bound
+        PackedPath path;
+        int cost;
+
+        Replan(int agent, long[] constraints) {
+            this.agent = agent;
+            this.constraints = constraints;
+            this.hash = 31 * agent + Arrays.hashCode(constraints);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Replan)) return false;
+            Replan r = (Replan) o;
+            return this.hash == r.hash && this.agent == r.agent && Arrays.equals(this.constraints, r.constraints);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    // a node of the constraint tree
+    private static class Node {
+        // node this one was split from, null for the root
+        final Node parent;
+        // index of the agent constrained by this node and the key of the constraint, agent -1 for the root
+        final int agent;
+        final long constraint;
+        // path and path cost of every agent of the group, replaced when a conflict is bypassed
+        ArrayList<PackedPath> paths;
+        int[] costs;
+        // sum of the path costs
+        int cost;
+        // collisions between the paths as {time, vertex, first agent index, second agent index}
+        ArrayList<int[]> conflicts;
+
+        Node(Node parent, int agent, long constraint) {
+            this.parent = parent;
+            this.agent = agent;
+            this.constraint = constraint;
+        }
+    }
+
+    // makespan bound, the longest path the low level may return
+    private int bound;
+    // board the agents move on
+    private Grid grid;
+    // whether conflicts are bypassed when possible
+    private boolean bypass;
+    // whether cardinal conflicts are split on first
+    private boolean prioritize;
+    // most constraint tree nodes expanded by a single call before giving up
+    private int nodeLimit;
+    // receives search times and counters
+    private Metrics metrics;
+    // time by which a call gives up
+    private Deadline deadline;
+
+    // simple constructor, with bypassing and prioritizing switched on
+    public CBS(int bound, Grid grid) {
+        this.bound = bound;
+        this.grid = grid;
+        this.bypass = true;
+        this.prioritize = true;
+        this.nodeLimit = 10000;
+        this.metrics = Metrics.NONE;
+        this.deadline = Deadline.NONE;
+    }
+
+    // switches bypassing of conflicts on or off
+    public void setBypass(boolean bypass) {
+        this.bypass = bypass;
+    }
+
+    // switches prioritizing of cardinal conflicts on or off
+    public void setPrioritize(boolean prioritize) {
+        this.prioritize = prioritize;
+    }
+
+    // sets the most constraint tree nodes a call may expand before it gives up
+    public void setNodeLimit(int nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    // sets where search times and counters are reported
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // sets the time by which a call gives up and returns -1
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    // gets the key of a vertex at a time step
+    private long key(int time, int vertex) {
+        return (long) time * this.grid.cells() + vertex;
+    }
+
+    // collects the constraints a node and its ancestors put on an agent, sorted for binary search
+    private long[] constraints(Node node, int agent) {
+        long[] keys = new long[4];
+        int n = 0;
+        for (Node m = node; m != null; m = m.parent) {
+            if (m.agent != agent) continue;
+            if (n == keys.length) keys = Arrays.copyOf(keys, 2 * n);
+            keys[n++] = m.constraint;
+        }
+        keys = Arrays.copyOf(keys, n);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    // runs the low level for an agent, returns its path or null if there is none within the bound
+    private PackedPath lowLevel(Agent a, long[] constraints, HashSet<Integer> group, ReservationTable cat) {
+        a.AStar((time, v) -> (cat != null && cat.isReservedOutside(time, v, group)) ||
+                (constraints.length > 0 && Arrays.binarySearch(constraints, key(time, v)) >= 0), this.bound,
+                this.metrics, this.deadline);
+        return a.getPathCost() == -1 ? null : a.getPath();
+    }
+
+    // finds every collision between the paths of a node
+    private void detect(Node node) {
+        node.conflicts = new ArrayList<>();
+        HashMap<Long, Integer> occupied = new HashMap<>();
+        for (int i = 0; i < node.paths.size(); i++) {
+            PackedPath p = node.paths.get(i);
+            for (int t = 0; t < p.size(); t++) {
+                int v = p.vertex(t);
+                Integer other = occupied.putIfAbsent(key(t, v), i);
+                if (other != null) node.conflicts.add(new int[]{t, v, other, i});
+            }
+        }
+        node.conflicts.sort((c1, c2) -> Integer.compare(c1[0], c2[0]));
+    }
+
+    // splits a node by forbidding an agent the vertex of a conflict, returns null if the agent cannot avoid it. The low
+    // level is only run for constraints that are not in replans yet
+    private Node child(Node node, int agent, int[] conflict, Agent[] members, HashSet<Integer> group,
+                       ReservationTable cat, HashMap<Replan, Replan> replans) {
+        Node c = new Node(node, agent, key(conflict[0], conflict[1]));
+        Replan r = new Replan(agent, constraints(c, agent));
+        Replan known = replans.putIfAbsent(r, r);
+        if (known != null) r = known;
+        else {
+            r.path = lowLevel(members[agent], r.constraints, group, cat);
+            r.cost = members[agent].getPathCost();
+        }
+        if (r.path == null) return null;
+        c.paths = new ArrayList<>(node.paths);
+        c.paths.set(agent, r.path);
+        c.costs = node.costs.clone();
+        c.costs[agent] = r.cost;
+        c.cost = node.cost - node.costs[agent] + c.costs[agent];
+        detect(c);
+        return c;
+    }
+
+    // replans a group of agents around the reservations of every other agent (leave cat null if there are none), sets
+    // their paths and updates cat, returns the makespan of the group or -1 if no solution was found within the bound
+    // and the node limit or before the deadline, in which case the agents keep their paths
+    public int solve(int[] conflictIDs, HashMap<Integer, Agent> agents, ReservationTable cat) {
+        long start = this.metrics.start();
+        try {
+            return search(conflictIDs, agents, cat);
+        }
+        finally {
+            this.metrics.stop(Metrics.Phase.CBS_SEARCH, start);
+        }
+    }
+
+    // body of solve
+    private int search(int[] conflictIDs, HashMap<Integer, Agent> agents, ReservationTable cat) {
+        int k = conflictIDs.length;
+        Agent[] members = new Agent[k];
+        HashSet<Integer> group = new HashSet<>();
+        ArrayList<PackedPath> oldPaths = new ArrayList<>(k);
+        int[] oldCosts = new int[k];
+        int i = 0;
+        for (int id : conflictIDs) {
+            members[i] = agents.get(id);
+            oldPaths.add(members[i].getPath());
+            oldCosts[i] = members[i].getPathCost();
+            group.add(id);
+            i++;
+        }
+
+        // the root plans every agent on its own
+        Node root = new Node(null, -1, 0);
+        root.paths = new ArrayList<>(k);
+        root.costs = new int[k];
+        for (i = 0; i < k; i++) {
+            PackedPath path = lowLevel(members[i], new long[0], group, cat);
+            if (path == null) return restore(members, oldPaths, oldCosts);
+            root.paths.add(path);
+            root.costs[i] = members[i].getPathCost();
+            root.cost += root.costs[i];
+        }
+        detect(root);
+
+        // cheapest node first, then the one with the fewest conflicts
+        PriorityQueue<Node> open = new PriorityQueue<>((n1, n2) -> n1.cost != n2.cost ?
+                Integer.compare(n1.cost, n2.cost) : Integer.compare(n1.conflicts.size(), n2.conflicts.size()));
+        open.add(root);
+        HashMap<Replan, Replan> replans = new HashMap<>();
+        int expanded = 0;
+        while (!open.isEmpty() && expanded < this.nodeLimit && !this.deadline.isExpired()) {
+            Node node = open.poll();
+            expanded++;
+            this.metrics.add(Metrics.Counter.CBS_NODES, 1);
+            if (node.conflicts.isEmpty()) return apply(node, members, cat);
+
+            Node[] split = null;
+            int splitIncrease = -1;
+            boolean bypassed = false;
+            int limit = this.prioritize ? Math.min(PRIORITIZE_LIMIT, node.conflicts.size()) : 1;
+            for (int c = 0; c < limit && !bypassed; c++) {
+                int[] conflict = node.conflicts.get(c);
+                Node[] children = {child(node, conflict[2], conflict, members, group, cat, replans),
+                        child(node, conflict[3], conflict, members, group, cat, replans)};
+                int increase = 0;
+                for (Node ch : children) {
+                    if (ch == null || ch.cost > node.cost) increase++;
+                    else if (this.bypass && !bypassed && ch.conflicts.size() < node.conflicts.size()) {
+                        // a child just as cheap with fewer conflicts replaces the paths of the node itself
+                        node.paths = ch.paths;
+                        node.costs = ch.costs;
+                        node.conflicts = ch.conflicts;
+                        bypassed = true;
+                    }
+                }
+                if (increase > splitIncrease) {
+                    split = children;
+                    splitIncrease = increase;
+                }
+                // a cardinal conflict cannot be beaten
+                if (increase == 2) break;
+            }
+            if (bypassed) {
+                this.metrics.add(Metrics.Counter.CBS_BYPASSES, 1);
+                open.add(node);
+                continue;
+            }
+            for (Node ch : split)
+                if (ch != null) open.add(ch);
+        }
+        return restore(members, oldPaths, oldCosts);
+    }
+
+    // gives the agents the paths of a solution and reserves them, returns the makespan
+    private int apply(Node node, Agent[] members, ReservationTable cat) {
+        int mpl = -1;
+        for (int i = 0; i < members.length; i++) {
+            Agent a = members[i];
+            a.setPath(node.paths.get(i));
+            a.setPathCost(node.costs[i]);
+            if (cat != null) cat.put(a.getID(), a.getPath());
+            mpl = Math.max(mpl, a.getPathLength());
+        }
+        return mpl;
+    }
+
+    // gives the agents back the paths they had before the call, returns -1
+    private int restore(Agent[] members, ArrayList<PackedPath> paths, int[] costs) {
+        for (int i = 0; i < members.length; i++) {
+            if (paths.get(i) != null) members[i].setPath(paths.get(i));
+            members[i].setPathCost(costs[i]);
+        }
+        return -1;
+    }
+}
@@ -1,15 +1,12 @@
 /**
  * Created by Eric He on 4/24/17.
  *
- * A unit of the grid that can also be called square, node, vertex, etc.
+ * A unit of the grid that can also be called square, node, vertex, etc. Paths are kept as PackedPaths of vertices,
+ * a cell only names a position.
  */
 
 public class Cell{
-    int heuristicCost = 0; // h-cost
-    int finalCost = 0; // f-cost
     int i, j; // coordinate representation
-    int distance; // distance from source
-    Cell parent; // maintain pointers for path
 
     // basic constructor
     Cell(int i, int j) {
@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps track of every vertex collision in a reservation table as paths are reserved and released. Only cells that
+ * are shared by two or more agents are stored, ordered by time step, so the earliest collision is available without
+ * rescanning any paths and an update costs time proportional to the changed path only.
+ */
+
+public class ConflictIndex {
+
+    // a vertex collision: two or more agents at the same cell at the same time step
+    public static class Conflict {
+        // time step of the collision, indexed from 0
+        public final int time;
+        // coordinates of the cell
+        public final int x, y;
+        // IDs of all agents at the cell in increasing order
+        public final int[] agents;
+
+        public Conflict(int time, int x, int y, int[] agents) {
+            this.time = time;
+            this.x = x;
+            this.y = y;
+            this.agents = agents;
+        }
+
+        public String toString() {
+            return "(" + this.time + ", [" + this.x + ", " + this.y + "], " + Arrays.toString(this.agents) + ")";
+        }
+    }
+
+    // board the collisions happen on
+    private Grid grid;
+    // shared cells keyed by time * vertices + vertex, mapped to the IDs of the agents occupying them
+    private TreeMap<Long, ArrayList<Integer>> shared;
+
+    // simple constructor
+    public ConflictIndex(Grid grid) {
+        this.grid = grid;
+        this.shared = new TreeMap<>();
+    }
+
+    // gets the key of a cell at a time step
+    private long key(int time, int vertex) {
+        return (long) time * this.grid.cells() + vertex;
+    }
+
+    // records that an agent entered a cell that already had occupants, owner is the previous occupant if there was
+    // exactly one
+    void occupy(int time, int vertex, int id, int previous, int owner) {
+        if (previous == 0) return;
+        long k = key(time, vertex);
+        ArrayList<Integer> ids = this.shared.get(k);
+        if (ids == null) {
+            ids = new ArrayList<>(2);
+            ids.add(owner);
+            this.shared.put(k, ids);
+        }
+        ids.add(id);
+    }
+
+    // records that an agent left a cell, remaining is the number of agents still occupying it
+    void vacate(int time, int vertex, int id, int remaining) {
+        if (remaining == 0) return;
+        long k = key(time, vertex);
+        if (remaining == 1) {
+            this.shared.remove(k);
+            return;
+        }
+        this.shared.get(k).remove((Integer) id);
+    }
+
+    // returns the IDs of the agents sharing a cell at a time step, null if it is not shared
+    ArrayList<Integer> occupants(int time, int vertex) {
+        return this.shared.get(key(time, vertex));
+    }
+
+    // returns if there are no collisions
+    public boolean isEmpty() {
+        return this.shared.isEmpty();
+    }
+
+    // returns the number of shared cells
+    public int size() {
+        return this.shared.size();
+    }
+
+    // returns the earliest collision, null if there is none
+    public Conflict next() {
+        Map.Entry<Long, ArrayList<Integer>> e = this.shared.firstEntry();
+        return e == null ? null : toConflict(e.getKey(), e.getValue());
+    }
+
+    // returns every current collision ordered by time step
+    public ArrayList<Conflict> all() {
+        ArrayList<Conflict> conflicts = new ArrayList<>(this.shared.size());
+        for (Map.Entry<Long, ArrayList<Integer>> e : this.shared.entrySet())
+            conflicts.add(toConflict(e.getKey(), e.getValue()));
+        return conflicts;
+    }
+
+    // helper that turns a stored entry into a collision
+    private Conflict toConflict(long key, ArrayList<Integer> ids) {
+        int vertices = this.grid.cells();
+        int time = (int) (key / vertices);
+        int v = (int) (key % vertices);
+        int[] agents = new int[ids.size()];
+        for (int i = 0; i < agents.length; i++)
+            agents[i] = ids.get(i);
+        Arrays.sort(agents);
+        return new Conflict(time, this.grid.x(v), this.grid.y(v), agents);
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * A point in time by which a plan has to be ready. Searches check it every so often and give up once it has passed,
+ * and the SAT-solver gets the remaining time as its sat4j timeout, so a run returns close to its deadline instead of
+ * hanging on one hard group.
+ */
+
+public class Deadline {
+
+    // a deadline that never expires
+    public static final Deadline NONE = new Deadline(0, false);
+
+    // value of System.nanoTime at which the deadline expires
+    private final long at;
+    // whether the deadline can expire at all
+    private final boolean bounded;
+
+    // simple constructor
+    private Deadline(long at, boolean bounded) {
+        this.at = at;
+        this.bounded = bounded;
+    }
+
+    // returns a deadline a number of milliseconds from now
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + millis * 1_000_000L, true);
+    }
+
+    // returns if the deadline can expire
+    public boolean isBounded() {
+        return this.bounded;
+    }
+
+    // returns if the deadline has passed
+    public boolean isExpired() {
+        return this.bounded && System.nanoTime() - this.at >= 0;
+    }
+
+    // returns the milliseconds left, 0 once expired and Long.MAX_VALUE if the deadline is not bounded
+    public long remainingMillis() {
+        if (!this.bounded) return Long.MAX_VALUE;
+        return Math.max(0, (this.at - System.nanoTime()) / 1_000_000L);
+    }
+}
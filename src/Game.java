@@ -1,9 +1,14 @@
 import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.TimeoutException;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
 
 /**
  * Created by Eric He on 4/26/17.
@@ -11,17 +16,30 @@ import java.util.LinkedList;
  * A solver and instance creator for the multi-agent pathfinding problem that uses a hybrid independence detection
  * and SAT-solving algorithm.
  *
+ * Once planned, agents can be added, removed or given a new goal and repair resolves only the collisions these changes
+ * bring about, starting from the paths, groups and SAT encodings of the plan so far.
+ *
  * The A* search is based off of the code found here: http://www.codebytes.in/2015/02/a-shortest-path-finding-algorithm.html
  */
 
 public class Game {
 
+    // how a run solves the instance
+    public enum Engine {
+        // independence detection, merged groups are replanned with a SAT-solver
+        ID_SAT,
+        // independence detection, merged groups are replanned with conflict-based search
+        ID_CBS,
+        // conflict-based search over every agent at once
+        CBS
+    }
+
     // agents in the game
     private HashMap<Integer, Agent> agents;
-    // board length
-    private int l;
+    // board the agents move on
+    private Grid grid;
     // collision avoidance table
-    private HashMap<Integer, ArrayList<Cell>> cat;
+    private ReservationTable cat;
     // max path length
     private int mpl;
     // max-replan size
@@ -36,33 +54,237 @@ public class Game {
     private int IDc;
     // makespan bound
     private int bound;
+    // SAT-solvers of the merged groups keyed by group representative, kept so a group that grows is not re-encoded
+    private HashMap<Integer, SATSolve> solvers;
+    // number of threads a SAT-solver may race configurations on, 1 to disable the portfolio
+    private int portfolioThreads;
+    // number of group replans won by each SAT-solver configuration
+    private HashMap<String, Integer> portfolioWins;
+    // receives timings and counters of the run, its A* searches and its SAT-solvers
+    private Metrics metrics;
+    // how the instance is solved
+    private Engine engine;
+    // conflict-based search used by the engines that need it, configured by the caller
+    private CBS cbs;
+    // coupled search tried first on merged groups of at most odGroupLimit agents
+    private ODAStar od;
+    private int odGroupLimit;
+    // time by which the current run gives up
+    private Deadline deadline;
+    // agent starting and agent ending at every vertex of the grid, 0 for none
+    private int[] startAt, goalAt;
+    // how the SAT-solvers of new groups search the makespan and by how many time steps an increment grows it
+    private SATSolve.MakespanSearch makespanSearch;
+    private int makespanStep;
+    // largest agent ID in the game
+    private int maxID;
+    // agents added or given a new goal since the last plan, replanned before the agents they collide with
+    private HashSet<Integer> changed;
+    // plans of solved groups reused when a group meets in the same situation again, null to always solve
+    private GroupPlanCache groupCache;
 
-    // simple constructor
+    // simple constructor for an obstacle-free l x l board
     public Game(int l, int bound) {
+        this(Grid.open(l), bound);
+    }
+
+    // game on a grid that may have obstacles and need not be square
+    public Game(Grid grid, int bound) {
         this.agents = new HashMap<>();
-        this.l = l;
+        this.grid = grid;
         this.num = 0;
         this.maxReplan = 1;
         this.SATc = 0;
         this.IDc = 0;
         this.bound = bound;
+        this.portfolioThreads = 1;
+        this.portfolioWins = new HashMap<>();
+        this.metrics = Metrics.NONE;
+        this.engine = Engine.ID_SAT;
+        this.cbs = new CBS(bound, grid);
+        this.od = new ODAStar(bound, grid);
+        this.odGroupLimit = 3;
+        this.makespanSearch = SATSolve.MakespanSearch.INCREMENT;
+        this.makespanStep = 1;
+        this.deadline = Deadline.NONE;
+        this.startAt = new int[grid.cells()];
+        this.goalAt = new int[grid.cells()];
+        this.changed = new HashSet<>();
+    }
+
+    // sets how the next run solves the instance
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    // returns how a run solves the instance
+    public Engine getEngine() {
+        return this.engine;
+    }
+
+    // returns the conflict-based search of the CBS engines, to switch its improvements on or off
+    public CBS getCBS() {
+        return this.cbs;
+    }
+
+    // returns the operator decomposition A* tried on small groups, to change its node budget
+    public ODAStar getODAStar() {
+        return this.od;
+    }
+
+    // sets the largest merged group operator decomposition A* is tried on before the group solver of the engine, 0 to
+    // never try it
+    public void setODGroupLimit(int odGroupLimit) {
+        this.odGroupLimit = odGroupLimit;
+    }
+
+    // sets the cache merged groups look their plan up in before they are solved and store it in afterwards, null to
+    // solve every group, which is the default so runs do not depend on what earlier runs solved
+    public void setGroupCache(GroupPlanCache groupCache) {
+        this.groupCache = groupCache;
+    }
+
+    // returns the cache merged groups look their plan up in, null if there is none
+    public GroupPlanCache getGroupCache() {
+        return this.groupCache;
+    }
+
+    // sets where the timings and counters of a run are reported, Metrics.NONE to record nothing
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // returns where the timings and counters of a run are reported
+    public Metrics getMetrics() {
+        return this.metrics;
+    }
+
+    // sets the number of threads each SAT replan may use to race differently configured solvers
+    public void setPortfolioThreads(int threads) {
+        this.portfolioThreads = threads;
     }
 
-    // adds an agent to the game, assumes agents with lesser IDs from 1 already added in
+    // sets how the SAT-solvers of groups search their makespan, from the bound down or from the lower bound up
+    public void setMakespanSearch(SATSolve.MakespanSearch search, int step) {
+        this.makespanSearch = search;
+        this.makespanStep = step;
+    }
+
+    // returns how many SAT replans each solver configuration has won so far
+    public HashMap<String, Integer> getPortfolioWins() {
+        return this.portfolioWins;
+    }
+
+    // adds an agent to the game, its ID must be positive and not in use and no other agent may share its start or its
+    // goal. Once the game is planned the agent's path is reserved right away and its collisions are left for repair
     public boolean add(Agent a) {
-        for (int i = 1; i < a.getID(); i++) {
-            Agent b = agents.get(i);
-            if ((a.getSI() == b.getSI() && a.getSJ() == b.getSJ()) ||
-                    (a.getEI() == b.getEI() && a.getEJ() == b.getEJ()))
-                return false;
-        }
-        if (a.getSI() == a.getEI() && a.getSJ() == a.getEJ())
+        int id = a.getID();
+        if (id < 1 || this.agents.containsKey(id) || (a.getSI() == a.getEI() && a.getSJ() == a.getEJ()))
+            return false;
+        // both ends must be cells that can be entered, with a path between them
+        if (!this.grid.isPassable(a.getSI(), a.getSJ()) || !this.grid.isPassable(a.getEI(), a.getEJ()) ||
+                a.getPath() == null)
+            return false;
+        int start = this.grid.vertex(a.getSI(), a.getSJ());
+        int goal = this.grid.vertex(a.getEI(), a.getEJ());
+        if (this.startAt[start] != 0 || this.goalAt[goal] != 0)
             return false;
-        this.agents.put(a.getID(), a);
+        this.startAt[start] = id;
+        this.goalAt[goal] = id;
+        this.agents.put(id, a);
         this.num++;
+        this.maxID = Math.max(this.maxID, id);
+        if (this.cat != null) {
+            this.groups.grow(this.maxID);
+            reserve(id, a.getPath());
+            this.mpl = Math.max(this.mpl, a.getPathLength());
+            this.changed.add(id);
+        }
+        return true;
+    }
+
+    // removes an agent from the game, returns false if there is no agent with the ID. Once the game is planned its
+    // reservations are released and it leaves its group, whose SAT encoding is dropped. Leaving cannot cause
+    // collisions so there is nothing to repair
+    public boolean remove(int id) {
+        Agent a = this.agents.remove(id);
+        if (a == null) return false;
+        this.startAt[this.grid.vertex(a.getSI(), a.getSJ())] = 0;
+        this.goalAt[this.grid.vertex(a.getEI(), a.getEJ())] = 0;
+        this.num--;
+        this.changed.remove(id);
+        if (this.cat != null) {
+            leaveGroup(id);
+            this.cat.remove(id);
+            released(a.getPathLength());
+        }
         return true;
     }
 
+    // gives an agent a new goal and plans its path on its own, returns false if there is no agent with the ID or the
+    // goal cannot be entered, is its start or is taken by another agent. Once the game is planned the agent leaves its
+    // group, whose SAT encoding is dropped, and its collisions are left for repair
+    public boolean changeGoal(int id, int ei, int ej) {
+        Agent a = this.agents.get(id);
+        if (a == null || !this.grid.isPassable(ei, ej) || (a.getSI() == ei && a.getSJ() == ej))
+            return false;
+        int goal = this.grid.vertex(ei, ej);
+        if (this.goalAt[goal] != 0 && this.goalAt[goal] != id)
+            return false;
+        int oldI = a.getEI(), oldJ = a.getEJ();
+        PackedPath oldPath = a.getPath();
+        int oldCost = a.getPathCost();
+        a.setGoal(ei, ej);
+        a.AStar(null);
+        if (a.getPathCost() == -1) {
+            a.setGoal(oldI, oldJ);
+            a.setPath(oldPath);
+            a.setPathCost(oldCost);
+            return false;
+        }
+        this.goalAt[this.grid.vertex(oldI, oldJ)] = 0;
+        this.goalAt[goal] = id;
+        a.resingle();
+        if (this.cat != null) {
+            leaveGroup(id);
+            reserve(id, a.getPath());
+            released(oldPath.size());
+            this.mpl = Math.max(this.mpl, a.getPathLength());
+            this.changed.add(id);
+        }
+        return true;
+    }
+
+    // updates the makespan after a path of a given length was given up, it is only looked for again if the path was
+    // the longest one
+    private void released(int length) {
+        if (length < this.mpl) return;
+        this.mpl = 0;
+        for (Agent b : this.agents.values()) this.mpl = Math.max(this.mpl, b.getPathLength());
+    }
+
+    // takes an agent out of its group and drops the SAT encoding of the group, which covers the agent
+    private void leaveGroup(int id) {
+        this.solvers.remove(this.groups.find(id));
+        this.groups.isolate(id);
+    }
+
+    // resolves the collisions brought about by adding agents or giving them new goals since the last plan, agents that
+    // changed are replanned first and the rest keep their paths wherever possible. Plans the whole game if it was not
+    // planned yet. Gives up once the deadline has passed, like plan
+    public PlanResult repair(Deadline deadline) {
+        if (this.cat == null) return plan(deadline);
+        return timed(() -> {
+            prepare(deadline);
+            try {
+                return resolve(detectCollision(), deadline);
+            }
+            finally {
+                this.changed.clear();
+            }
+        });
+    }
+
     // return current max path length
     public int getMPL() {
         return this.mpl;
@@ -83,47 +305,237 @@ public class Game {
         return this.IDc;
     }
 
-    // goes through the collision avoidance table to see if there are currently any collisions
+    // returns the earliest collision in the collision avoidance table, the table keeps its collisions up to date as
+    // paths are replaced so nothing is rescanned here
     // collisions occur when two robots are at the same vertex at the same time
     private LinkedList<Integer> detectCollision () {
+        long start = this.metrics.start();
+        ConflictIndex.Conflict c = cat.conflicts().next();
+        this.metrics.stop(Metrics.Phase.CONFLICT_SCAN, start);
+        if (c == null) return null;
         LinkedList<Integer> collides = new LinkedList<>();
+        collides.add(c.agents[0]);
+        collides.add(c.agents[1]);
+        return collides;
+    }
 
-        for (int i = 0; i < this.mpl; i++) {
-            HashMap<String, Integer> checker = new HashMap<>();
-            for (int j = 1; j <= agents.size(); j++) {
-                ArrayList<Cell> p = cat.get(j);
+    // returns every collision currently in the collision avoidance table ordered by time step
+    public ArrayList<ConflictIndex.Conflict> detectAllCollisions() {
+        return cat.conflicts().all();
+    }
 
-                if (i >= p.size()) continue;
-                String currCell = p.get(i).toString();
-                if (!checker.containsKey(currCell))
-                    checker.put(currCell, j);
-                else {
-                    collides.add(checker.get(currCell));
-                    collides.add(j);
-                    return collides;
-                }
+    // replaces the path an agent reserves in the collision avoidance table, which updates its collisions
+    private void reserve(int id, PackedPath path) {
+        long start = this.metrics.start();
+        cat.put(id, path);
+        this.metrics.stop(Metrics.Phase.CONFLICT_SCAN, start);
+    }
+
+    // replans a single agent around the collision avoidance table
+    private void replan(Agent a) {
+        long start = this.metrics.start();
+        a.AStar(cat, this.bound, this.metrics, this.deadline);
+        this.metrics.stop(Metrics.Phase.ID_REPLAN, start);
+        this.metrics.add(Metrics.Counter.ID_REPLANS, 1);
+    }
+
+    // merges the groups of two agents and replans the merged group, with the plan the group cache holds for its
+    // situation if there is one, otherwise small groups with operator decomposition A* and the rest, or the ones it
+    // gives up on, with the SAT-solver of the group or conflict-based search. Returns the makespan of the group or -1
+    // if it could not be solved
+    private int replan(int i, int j) throws TimeoutException, ContradictionException {
+        SATSolve sat = this.engine == Engine.ID_SAT ? takeSolver(groups.find(i), groups.find(j)) : null;
+        int[] group = groups.merge(i, j);
+        this.metrics.merged(group.length);
+        int s = -1;
+        GroupPlanCache.Key key = null;
+        if (this.groupCache != null) {
+            key = GroupPlanCache.key(group, agents, cat, this.grid, this.bound);
+            s = this.groupCache.apply(key, group, agents, cat, this.grid);
+            if (s != -1) {
+                this.metrics.add(Metrics.Counter.GROUP_CACHE_HITS, 1);
+                if (sat != null) this.solvers.put(groups.find(i), sat);
+                this.maxReplan = Math.max(group.length, this.maxReplan);
+                return s;
             }
         }
-        return null;
+        if (group.length <= this.odGroupLimit) {
+            this.metrics.add(Metrics.Counter.OD_REPLANS, 1);
+            s = this.od.solve(group, agents, cat);
+            if (s != -1) this.metrics.add(Metrics.Counter.OD_SOLVED, 1);
+        }
+        if (s == -1 && this.engine != Engine.ID_SAT) {
+            this.metrics.add(Metrics.Counter.CBS_REPLANS, 1);
+            s = this.cbs.solve(group, agents, cat);
+        }
+        else if (s == -1) {
+            if (sat == null) {
+                // set tentative makespan bound
+                sat = new SATSolve(this.bound, this.grid);
+                sat.setPortfolio(this.portfolioThreads);
+                sat.setMakespanSearch(this.makespanSearch, this.makespanStep);
+            }
+            this.metrics.add(Metrics.Counter.SAT_REPLANS, 1);
+            sat.setMetrics(this.metrics);
+            sat.setDeadline(this.deadline);
+            s = sat.solve(group, agents, cat);
+            this.portfolioWins.merge(sat.getWinner(), 1, Integer::sum);
+        }
+        // the solver keeps the encoding of the group even if it was not needed this time
+        if (sat != null) this.solvers.put(groups.find(i), sat);
+        if (s != -1) this.maxReplan = Math.max(group.length, this.maxReplan);
+        if (s != -1 && key != null) this.groupCache.put(key, group, agents, this.grid);
+        return s;
+    }
+
+    // takes the SAT-solvers of two groups that are about to be merged, given by their representatives, and returns the
+    // one to reuse for the merged group, the solver of the larger group already holds more of the encoding. Returns
+    // null if neither group has one
+    private SATSolve takeSolver(int ri, int rj) {
+        SATSolve sat1 = this.solvers.remove(ri);
+        SATSolve sat2 = this.solvers.remove(rj);
+        if (sat1 == null || (sat2 != null && sat2.size() > sat1.size())) sat1 = sat2;
+        return sat1;
     }
 
     // runs the simulation and solves the instance
     public boolean run() throws TimeoutException, ContradictionException {
+        long start = this.metrics.start();
+        try {
+            if (solve(Deadline.NONE) == PlanResult.Status.SOLVED) return true;
+            System.out.println();
+            System.out.println("FAILED");
+            System.out.println();
+            return false;
+        }
+        finally {
+            this.metrics.stop(Metrics.Phase.RUN, start);
+        }
+    }
+
+    // solves the instance like run but gives up once the deadline has passed, never throws or prints and instead
+    // returns the paths as far as they were planned together with the collisions left. The timings of the result are
+    // recorded in the metrics of the game if it has RunMetrics and in metrics of their own otherwise
+    public PlanResult plan(Deadline deadline) {
+        return timed(() -> solve(deadline));
+    }
+
+    // writes the current path of every agent in the binary format of PlanWriter, meant for after a run or a repair.
+    // The paths go out one time step at a time without being copied, the stream is left open
+    public void writePlan(OutputStream out) throws IOException {
+        HashMap<Integer, PackedPath> paths = new HashMap<>();
+        for (Agent a : agents.values()) paths.put(a.getID(), a.getPath());
+        new PlanWriter(out).write(this.grid, paths);
+    }
+
+    // part of planning that may run out of time or find a group that cannot be solved
+    private interface Planning {
+        PlanResult.Status run() throws TimeoutException, ContradictionException;
+    }
+
+    // runs a part of planning and collects its result and timings
+    private PlanResult timed(Planning planning) {
+        Metrics previous = this.metrics;
+        RunMetrics run = previous instanceof RunMetrics ? (RunMetrics) previous : new RunMetrics("plan");
+        this.metrics = run;
+        long start = run.start();
+        PlanResult.Status status;
+        try {
+            status = planning.run();
+        }
+        catch (TimeoutException e) {
+            // sat4j ran out of the time left
+            status = PlanResult.Status.TIMED_OUT;
+        }
+        catch (ContradictionException e) {
+            // a group can trivially not be solved within the bound
+            status = PlanResult.Status.FAILED;
+        }
+        finally {
+            run.stop(Metrics.Phase.RUN, start);
+            this.metrics = previous;
+        }
+        return result(status, run);
+    }
+
+    // collects the paths, the collision-free prefix and the groups that still collide after a run
+    private PlanResult result(PlanResult.Status status, RunMetrics run) {
+        HashMap<Integer, PackedPath> paths = new HashMap<>();
+        // the makespan kept during a run only grows, here it is made exact
+        this.mpl = 0;
+        for (Agent a : agents.values()) {
+            paths.put(a.getID(), a.getPath());
+            this.mpl = Math.max(this.mpl, a.getPathLength());
+        }
+        ConflictIndex.Conflict first = cat.conflicts().next();
+        int prefix = first == null ? this.mpl : first.time;
+        // every group that takes part in a collision, keyed by its representative
+        TreeMap<Integer, List<Integer>> unresolved = new TreeMap<>();
+        for (ConflictIndex.Conflict c : cat.conflicts().all()) {
+            for (int k : c.agents) {
+                int r = groups.find(k);
+                if (unresolved.containsKey(r)) continue;
+                int[] group = groups.members(r);
+                List<Integer> members = new ArrayList<>(group.length);
+                for (int m : group) members.add(m);
+                unresolved.put(r, members);
+            }
+        }
+        return new PlanResult(status, this.mpl, paths, prefix, new ArrayList<>(unresolved.values()), run);
+    }
+
+    // body of run, returns how it ended
+    private PlanResult.Status solve(Deadline deadline) throws TimeoutException, ContradictionException {
         // UF-data structure to keep track of merging
-        this.groups = new UnionFind(this.num);
+        this.groups = new UnionFind(this.maxID);
+        this.solvers = new HashMap<>();
+        this.changed.clear();
+        prepare(deadline);
         // create a collision avoidance table and update it using paths, update makespan while at it
-        cat = new HashMap<>();
+        long start = this.metrics.start();
+        cat = new ReservationTable(this.grid);
         int maxPathLength = 0;
-        for (int i = 1; i <= num; i++) {
-            Agent a = agents.get(i);
+        for (Agent a : agents.values()) {
             maxPathLength = Math.max(maxPathLength, a.getPathLength());
             cat.put(a.getID(), a.getPath());
         }
         this.mpl = maxPathLength;
+        this.metrics.stop(Metrics.Phase.CONFLICT_SCAN, start);
 
         // simulate until no more collisions
         LinkedList<Integer> c = detectCollision();
+        if (c != null && this.engine == Engine.CBS) {
+            // every agent is replanned as one group instead
+            int first = c.get(0);
+            for (int id : agents.keySet()) groups.union(first, id);
+            this.metrics.merged(num);
+            this.metrics.add(Metrics.Counter.CBS_REPLANS, 1);
+            int s = this.cbs.solve(groups.members(first), agents, cat);
+            if (s == -1) return deadline.isExpired() ? PlanResult.Status.TIMED_OUT : PlanResult.Status.FAILED;
+            for (Agent a : agents.values()) a.unsingle();
+            this.mpl = s;
+            this.maxReplan = num;
+            return PlanResult.Status.SOLVED;
+        }
+        return resolve(c, deadline);
+    }
+
+    // hands the deadline and the metrics of a run to the group solvers
+    private void prepare(Deadline deadline) {
+        this.deadline = deadline;
+        this.cbs.setMetrics(this.metrics);
+        this.cbs.setDeadline(deadline);
+        this.od.setMetrics(this.metrics);
+        this.od.setDeadline(deadline);
+    }
+
+    // resolves collisions starting from the given one until there are none left
+    private PlanResult.Status resolve(LinkedList<Integer> c, Deadline deadline)
+            throws TimeoutException, ContradictionException {
         while (c != null) {
+            if (deadline.isExpired()) return PlanResult.Status.TIMED_OUT;
+            // an agent that changed since the last plan is replanned before one that did not
+            if (this.changed.contains(c.get(1)) && !this.changed.contains(c.get(0))) c.add(c.remove(0));
             // first agent
             int i = c.get(0);
             Agent a = agents.get(i);
@@ -134,30 +546,23 @@ public class Game {
             //only if both are single use ID replan
             if (a.isSingle() && b.isSingle()) {
                 int bound1 = a.getPathCost();
-                ArrayList<Cell> oldPath1 = a.getPath();
-                a.AStar(cat);
+                PackedPath oldPath1 = a.getPath();
+                replan(a);
                 // replan for first fails
                 if (a.getPathCost() != bound1) {
                     a.setPath(oldPath1);
                     a.setPathCost(bound1);
                     // try to replan second
                     int bound2 = b.getPathCost();
-                    ArrayList<Cell> oldPath2 = b.getPath();
-                    b.AStar(cat);
+                    PackedPath oldPath2 = b.getPath();
+                    replan(b);
                     // replan for second fails
                     if (b.getPathCost() != bound2) {
                         b.setPath(oldPath2);
                         b.setPathCost(bound2);
-                        LinkedList<Integer> satReplan = groups.merge(i, j);
-                        // set tentative makespan bound
-                        SATSolve sat = new SATSolve(this.bound, l, this.num);
-                        int s = sat.solve(satReplan, agents, cat);
-                        if (s == -1) {
-                            System.out.println();
-                            System.out.println("FAILED");
-                            System.out.println();
-                            return false;
-                        }
+                        int s = replan(i, j);
+                        if (s == -1)
+                            return deadline.isExpired() ? PlanResult.Status.TIMED_OUT : PlanResult.Status.FAILED;
                         else {
                             // if ID does not work use SAT-solver
                             this.SATc++;
@@ -166,48 +571,39 @@ public class Game {
                             a.setIncorrect();
                             b.setIncorrect();
                             this.mpl = Math.max(s, this.mpl);
-                            this.maxReplan = Math.max(satReplan.size(), this.maxReplan);
                         }
                         c = detectCollision();
                     }
                     // replan for second succeeds + update cat
                     else {
                         this.IDc++;
-                        cat.remove(j);
-                        cat.put(j, b.getPath());
+                        reserve(j, b.getPath());
+                        this.mpl = Math.max(b.getPathLength(), this.mpl);
                         c = detectCollision();
                     }
                 } else {
                     // replan for first succeeds + update cat
                     this.IDc++;
-                    cat.remove(i);
-                    cat.put(i, a.getPath());
+                    reserve(i, a.getPath());
+                    this.mpl = Math.max(a.getPathLength(), this.mpl);
                     c = detectCollision();
                 }
             }
             // if not singular agent it means it was already replanned using a SAT-solver, then replan again with SAT
             else {
-                LinkedList<Integer> satReplan = groups.merge(i, j);
-                // set tentative makespan bound
-                SATSolve sat = new SATSolve(this.bound, l, this.num);
-                int s = sat.solve(satReplan, agents, cat);
-                if (s == -1) {
-                    System.out.println();
-                    System.out.println("FAILED");
-                    System.out.println();
-                    return false;
-                }
+                int s = replan(i, j);
+                if (s == -1)
+                    return deadline.isExpired() ? PlanResult.Status.TIMED_OUT : PlanResult.Status.FAILED;
                 else {
                     a.unsingle();
                     b.unsingle();
                     a.setIncorrect();
                     b.setIncorrect();
                     this.mpl = Math.max(s, this.mpl);
-                    this.maxReplan = Math.max(satReplan.size(), this.maxReplan);
                 }
                 c = detectCollision();
             }
         }
-        return true;
+        return PlanResult.Status.SOLVED;
     }
 }
@@ -0,0 +1,134 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable map of the board shared by every agent, search and solver of an instance. Which cells can be entered is
+ * packed into a bitset with one bit per cell, and the moves out of every cell are precomputed into a compressed sparse
+ * row array, so searches walk a flat int array instead of testing the eight directions against the board edges.
+ *
+ * Cells are numbered in row-major order, the vertex of (x, y) is y * width + x. A diagonal move is only possible if
+ * both cells it cuts the corner of can be entered, as in the MovingAI benchmarks.
+ */
+
+public class Grid {
+
+    // open square grids by side length, so randomly generated games of one size share their grid
+    private static final ConcurrentHashMap<Integer, Grid> OPEN = new ConcurrentHashMap<>();
+
+    // number of columns and rows
+    private final int width, height;
+    // bit y * width + x is set if the cell (x, y) can be entered
+    private final long[] passable;
+    // number of cells that can be entered
+    private final int passableCount;
+    // the neighbors of vertex v are neighbors[offsets[v]] up to but excluding neighbors[offsets[v + 1]]
+    private final int[] offsets;
+    private final int[] neighbors;
+
+    // builds a grid from its passable cells, bit y * width + x set for the cell (x, y)
+    public Grid(int width, int height, long[] passable) {
+        this.width = width;
+        this.height = height;
+        this.passable = passable.clone();
+        int count = 0;
+        for (long word : this.passable) count += Long.bitCount(word);
+        this.passableCount = count;
+
+        int cells = width * height;
+        this.offsets = new int[cells + 1];
+        int[] adjacent = new int[8 * count];
+        int n = 0;
+        for (int v = 0; v < cells; v++) {
+            this.offsets[v] = n;
+            if (!isPassable(v)) continue;
+            int x = x(v), y = y(v);
+            // same order as the eight directions were visited before: by column, then by row
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if (dx == 0 && dy == 0) continue;
+                    if (!isPassable(x + dx, y + dy)) continue;
+                    if (dx != 0 && dy != 0 && (!isPassable(x + dx, y) || !isPassable(x, y + dy))) continue;
+                    adjacent[n++] = vertex(x + dx, y + dy);
+                }
+            }
+        }
+        this.offsets[cells] = n;
+        this.neighbors = n == adjacent.length ? adjacent : Arrays.copyOf(adjacent, n);
+    }
+
+    // returns the obstacle-free l x l grid, the board of a randomly generated game
+    public static Grid open(int l) {
+        return OPEN.computeIfAbsent(l, k -> {
+            long[] bits = new long[(k * k + 63) / 64];
+            for (int i = 0; i < k * k; i++)
+                bits[i >>> 6] |= 1L << i;
+            return new Grid(k, k, bits);
+        });
+    }
+
+    // returns the number of columns
+    public int width() {
+        return this.width;
+    }
+
+    // returns the number of rows
+    public int height() {
+        return this.height;
+    }
+
+    // returns the number of cells, passable or not
+    public int cells() {
+        return this.width * this.height;
+    }
+
+    // gets the vertex of a coordinate
+    public int vertex(int x, int y) {
+        return y * this.width + x;
+    }
+
+    // gets the column of a vertex
+    public int x(int v) {
+        return v % this.width;
+    }
+
+    // gets the row of a vertex
+    public int y(int v) {
+        return v / this.width;
+    }
+
+    // checks if a vertex can be entered
+    public boolean isPassable(int v) {
+        return (this.passable[v >>> 6] & (1L << v)) != 0;
+    }
+
+    // checks if a coordinate is on the grid and its cell can be entered
+    public boolean isPassable(int x, int y) {
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) return false;
+        return isPassable(vertex(x, y));
+    }
+
+    // returns the index of the first neighbor of a vertex, see neighbor
+    public int firstNeighbor(int v) {
+        return this.offsets[v];
+    }
+
+    // returns the index after the last neighbor of a vertex, see neighbor
+    public int endNeighbor(int v) {
+        return this.offsets[v + 1];
+    }
+
+    // returns the neighbor at an index between firstNeighbor and endNeighbor of some vertex
+    public int neighbor(int k) {
+        return this.neighbors[k];
+    }
+
+    // returns the number of cells that can be entered
+    public int passableCount() {
+        return this.passableCount;
+    }
+
+    // checks if the grid is a square without obstacles
+    public boolean isOpenSquare() {
+        return this.width == this.height && this.passableCount == this.width * this.height;
+    }
+}
@@ -0,0 +1,284 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Plans of solved conflict groups, so a group that meets in the same situation again is not solved again. The key of a
+ * group is its situation relative to the corner of a window around its starts and goals: the bound, the starts and
+ * goals in order of start, and which cells of the window are obstacles or reserved by agents outside the group at
+ * every time step. The same robots meeting at the same crossing with the same traffic around them give the same key
+ * wherever the crossing is.
+ *
+ * Paths may leave the window, so a stored plan is checked against the grid and the current reservations before it is
+ * used. Plans are kept in least recently used order and the oldest ones are evicted once the plans together take more
+ * than the memory cap. A cache can be shared by games on different grids and from different threads.
+ */
+
+public class GroupPlanCache {
+
+    // cells around the starts and goals of a group that are part of its key
+    private static final int MARGIN = 2;
+
+    // situation of a group relative to the corner of its window
+    public static class Key {
+        // x and y of the corner of the window on the grid, not part of the key
+        final int x0, y0;
+        // number of agents, bound, size of the window and the start and goal of every agent relative to the corner
+        final int[] shape;
+        // cells of the window that cannot be entered, first the obstacles and then the reservations of every time step
+        final long[] blocked;
+        // hash of shape and blocked
+        final int hash;
+
+        Key(int x0, int y0, int[] shape, long[] blocked) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.shape = shape;
+            this.blocked = blocked;
+            this.hash = 31 * Arrays.hashCode(shape) + Arrays.hashCode(blocked);
+        }
+
+        // returns the bytes the key takes
+        long bytes() {
+            return 4L * this.shape.length + 8L * this.blocked.length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return this.hash == k.hash && Arrays.equals(this.shape, k.shape) && Arrays.equals(this.blocked, k.blocked);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    // most bytes the plans may take together
+    private long capacity;
+    // bytes the plans currently take
+    private long bytes;
+    // paths of every agent in order of start as x and y pairs relative to the corner of the window, least recently
+    // used first
+    private LinkedHashMap<Key, int[][]> plans;
+    // lookups answered from the cache, lookups that were not, plans evicted and stored plans that were out of date
+    private long hits, misses, evictions, rejections;
+
+    // cache holding at most capacity bytes of plans
+    public GroupPlanCache(long capacity) {
+        this.capacity = capacity;
+        this.plans = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // returns the key of a group around the reservations of every other agent (leave cat null if there are none), the
+    // agents are given by their IDs
+    public static Key key(int[] group, HashMap<Integer, Agent> agents, ReservationTable cat, Grid grid, int bound) {
+        Agent[] members = ordered(group, agents, grid);
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (Agent a : members) {
+            minX = Math.min(minX, Math.min(a.getSI(), a.getEI()));
+            minY = Math.min(minY, Math.min(a.getSJ(), a.getEJ()));
+            maxX = Math.max(maxX, Math.max(a.getSI(), a.getEI()));
+            maxY = Math.max(maxY, Math.max(a.getSJ(), a.getEJ()));
+        }
+        int x0 = minX - MARGIN, y0 = minY - MARGIN;
+        int w = maxX - minX + 1 + 2 * MARGIN, h = maxY - minY + 1 + 2 * MARGIN;
+
+        int[] shape = new int[4 + 4 * members.length];
+        shape[0] = members.length;
+        shape[1] = bound;
+        shape[2] = w;
+        shape[3] = h;
+        for (int k = 0; k < members.length; k++) {
+            Agent a = members[k];
+            shape[4 + 4 * k] = a.getSI() - x0;
+            shape[5 + 4 * k] = a.getSJ() - y0;
+            shape[6 + 4 * k] = a.getEI() - x0;
+            shape[7 + 4 * k] = a.getEJ() - y0;
+        }
+
+        // layer 0 holds the obstacles, cells off the grid included, and layer t + 1 the reservations at time step t
+        HashSet<Integer> ids = new HashSet<>();
+        for (int id : group) ids.add(id);
+        int cells = w * h;
+        long[] blocked = new long[(int) (((long) cells * (bound + 1) + 63) >>> 6)];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int gx = x0 + x, gy = y0 + y;
+                int bit = y * w + x;
+                if (gx < 0 || gy < 0 || gx >= grid.width() || gy >= grid.height() || !grid.isPassable(gx, gy)) {
+                    blocked[bit >>> 6] |= 1L << bit;
+                    continue;
+                }
+                if (cat == null) continue;
+                int v = grid.vertex(gx, gy);
+                for (int t = 0; t < bound; t++) {
+                    int b = (t + 1) * cells + bit;
+                    if (cat.isReservedOutside(t, v, ids)) blocked[b >>> 6] |= 1L << b;
+                }
+            }
+        }
+        return new Key(x0, y0, shape, blocked);
+    }
+
+    // returns the agents of a group in order of their start
+    private static Agent[] ordered(int[] group, HashMap<Integer, Agent> agents, Grid grid) {
+        Agent[] members = new Agent[group.length];
+        for (int k = 0; k < group.length; k++) members[k] = agents.get(group[k]);
+        Arrays.sort(members, (a, b) -> Integer.compare(grid.vertex(a.getSI(), a.getSJ()),
+                grid.vertex(b.getSI(), b.getSJ())));
+        return members;
+    }
+
+    // gives the agents of a group the paths stored for a key if they are still free of obstacles and reservations,
+    // reserves them and returns the makespan of the group, -1 if there is no usable plan
+    public int apply(Key key, int[] group, HashMap<Integer, Agent> agents, ReservationTable cat, Grid grid) {
+        int[][] plan;
+        synchronized (this) {
+            plan = this.plans.get(key);
+            if (plan == null) {
+                this.misses++;
+                return -1;
+            }
+        }
+        Agent[] members = ordered(group, agents, grid);
+        HashSet<Integer> ids = new HashSet<>();
+        for (int id : group) ids.add(id);
+        PackedPath[] paths = new PackedPath[members.length];
+        for (int k = 0; k < members.length; k++) {
+            paths[k] = translate(plan[k], key, ids, cat, grid);
+            if (paths[k] == null) {
+                synchronized (this) {
+                    this.rejections++;
+                    this.misses++;
+                }
+                return -1;
+            }
+        }
+        synchronized (this) {
+            this.hits++;
+        }
+        int mpl = -1;
+        for (int k = 0; k < members.length; k++) {
+            Agent a = members[k];
+            int cost = 0;
+            for (int t = 1; t < paths[k].size(); t++)
+                if (paths[k].vertex(t) != paths[k].vertex(t - 1))
+                    cost += Agent.moveCost(grid, paths[k].vertex(t - 1), paths[k].vertex(t));
+            a.setPath(paths[k]);
+            a.setPathCost(cost);
+            if (cat != null) cat.put(a.getID(), paths[k]);
+            mpl = Math.max(mpl, paths[k].size());
+        }
+        return mpl;
+    }
+
+    // moves a stored path to the window of a key, returns null if it enters an obstacle or a cell reserved outside
+    // the group or makes a move the grid does not allow
+    private static PackedPath translate(int[] steps, Key key, HashSet<Integer> ids, ReservationTable cat, Grid grid) {
+        int[] vertices = new int[steps.length / 2];
+        for (int t = 0; t < vertices.length; t++) {
+            int x = key.x0 + steps[2 * t], y = key.y0 + steps[2 * t + 1];
+            if (x < 0 || y < 0 || x >= grid.width() || y >= grid.height() || !grid.isPassable(x, y)) return null;
+            int v = grid.vertex(x, y);
+            if (cat != null && cat.isReservedOutside(t, v, ids)) return null;
+            if (t > 0 && v != vertices[t - 1] && !isNeighbor(grid, vertices[t - 1], v)) return null;
+            vertices[t] = v;
+        }
+        return new PackedPath(grid, vertices);
+    }
+
+    // checks if a move between two vertices is allowed by the grid
+    private static boolean isNeighbor(Grid grid, int from, int to) {
+        for (int k = grid.firstNeighbor(from), end = grid.endNeighbor(from); k < end; k++)
+            if (grid.neighbor(k) == to) return true;
+        return false;
+    }
+
+    // stores the paths the agents of a group currently have under a key
+    public void put(Key key, int[] group, HashMap<Integer, Agent> agents, Grid grid) {
+        Agent[] members = ordered(group, agents, grid);
+        int[][] plan = new int[members.length][];
+        long size = key.bytes();
+        for (int k = 0; k < members.length; k++) {
+            PackedPath p = members[k].getPath();
+            plan[k] = new int[2 * p.size()];
+            for (int t = 0; t < p.size(); t++) {
+                plan[k][2 * t] = p.x(t) - key.x0;
+                plan[k][2 * t + 1] = p.y(t) - key.y0;
+            }
+            size += 4L * plan[k].length;
+        }
+        synchronized (this) {
+            int[][] old = this.plans.put(key, plan);
+            if (old != null) this.bytes -= bytes(key, old);
+            this.bytes += size;
+            evict();
+        }
+    }
+
+    // returns the bytes an entry takes
+    private static long bytes(Key key, int[][] plan) {
+        long size = key.bytes();
+        for (int[] p : plan) size += 4L * p.length;
+        return size;
+    }
+
+    // changes the memory cap and evicts plans until it holds
+    public synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    // returns the number of bytes the plans take
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    // returns the number of plans stored
+    public synchronized int size() {
+        return this.plans.size();
+    }
+
+    // returns the number of lookups answered from the cache
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    // returns the number of lookups that found no usable plan
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    // returns the number of plans evicted to keep the memory cap
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    // returns the number of lookups whose stored plan ran into obstacles or reservations outside of the window
+    public synchronized long getRejections() {
+        return this.rejections;
+    }
+
+    // forgets every plan
+    public synchronized void clear() {
+        this.plans.clear();
+        this.bytes = 0;
+    }
+
+    // removes the least recently used plans until the cap holds, the plan just added always stays
+    private void evict() {
+        Iterator<Map.Entry<Key, int[][]>> it = this.plans.entrySet().iterator();
+        while (this.bytes > this.capacity && this.plans.size() > 1) {
+            Map.Entry<Key, int[][]> e = it.next();
+            this.bytes -= bytes(e.getKey(), e.getValue());
+            it.remove();
+            this.evictions++;
+        }
+    }
+}
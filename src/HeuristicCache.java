@@ -0,0 +1,178 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exact distances to a goal, computed once per goal and map and shared by every search towards that goal. Costs are
+ * found by a reverse Dijkstra search with the move costs of Agent, which makes them the tightest admissible A*
+ * heuristic on the grid, and step counts by a breadth-first search, which bounds how soon an agent can arrive for the
+ * SAT encoding. Moves are symmetric so distances from a cell are distances to it as well.
+ *
+ * Tables are kept in least recently used order and the oldest ones are evicted once the tables together take more
+ * than the memory cap.
+ */
+
+public class HeuristicCache {
+
+    // distance of a cell that cannot reach the goal
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // cache used by agents and SAT-solvers, 64 MiB by default
+    private static final HeuristicCache SHARED = new HeuristicCache(64L << 20);
+
+    // a table of one kind towards one vertex of one grid, grids are compared by identity since they are immutable
+    private static class Key {
+        final Grid grid;
+        final int vertex;
+        final boolean steps;
+
+        Key(Grid grid, int vertex, boolean steps) {
+            this.grid = grid;
+            this.vertex = vertex;
+            this.steps = steps;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return this.grid == k.grid && this.vertex == k.vertex && this.steps == k.steps;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(this.grid) * 31 + this.vertex) * 2 + (this.steps ? 1 : 0);
+        }
+    }
+
+    // most bytes the tables may take together
+    private long capacity;
+    // bytes the tables currently take
+    private long bytes;
+    // tables in least recently used order
+    private LinkedHashMap<Key, int[]> tables;
+    // lookups answered from the cache and lookups that computed a table
+    private long hits, misses;
+
+    // cache holding at most capacity bytes of tables
+    public HeuristicCache(long capacity) {
+        this.capacity = capacity;
+        this.tables = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // returns the cache shared by agents and SAT-solvers
+    public static HeuristicCache shared() {
+        return SHARED;
+    }
+
+    // returns the cost of the cheapest path from every vertex of a grid to a goal vertex in VCOST and DCOST units,
+    // UNREACHABLE if there is none
+    public int[] costs(Grid grid, int goal) {
+        return table(new Key(grid, goal, false));
+    }
+
+    // returns the fewest moves from every vertex of a grid to a goal vertex, UNREACHABLE if there is no path
+    public int[] steps(Grid grid, int goal) {
+        return table(new Key(grid, goal, true));
+    }
+
+    // changes the memory cap and evicts tables until it holds
+    public synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    // returns the number of bytes the tables take
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    // returns the number of lookups answered from the cache
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    // returns the number of lookups that had to compute their table
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    // forgets every table
+    public synchronized void clear() {
+        this.tables.clear();
+        this.bytes = 0;
+    }
+
+    // helper that looks up a table and computes it outside of the lock if it is missing
+    private int[] table(Key key) {
+        synchronized (this) {
+            int[] t = this.tables.get(key);
+            if (t != null) {
+                this.hits++;
+                return t;
+            }
+            this.misses++;
+        }
+        int[] t = key.steps ? breadthFirst(key.grid, key.vertex) : dijkstra(key.grid, key.vertex);
+        synchronized (this) {
+            // another thread may have computed the same table in the meantime
+            int[] old = this.tables.put(key, t);
+            if (old != null) this.bytes -= 4L * old.length;
+            this.bytes += 4L * t.length;
+            evict();
+        }
+        return t;
+    }
+
+    // removes the least recently used tables until the cap holds, the table just added always stays
+    private void evict() {
+        Iterator<Map.Entry<Key, int[]>> it = this.tables.entrySet().iterator();
+        while (this.bytes > this.capacity && this.tables.size() > 1) {
+            this.bytes -= 4L * it.next().getValue().length;
+            it.remove();
+        }
+    }
+
+    // cheapest costs to a vertex
+    private static int[] dijkstra(Grid grid, int goal) {
+        int[] dist = new int[grid.cells()];
+        Arrays.fill(dist, UNREACHABLE);
+        IndexedHeap open = new IndexedHeap(grid.cells());
+        dist[goal] = 0;
+        open.push(goal, 0);
+        while (!open.isEmpty()) {
+            int v = open.poll();
+            for (int k = grid.firstNeighbor(v), end = grid.endNeighbor(v); k < end; k++) {
+                int u = grid.neighbor(k);
+                int d = dist[v] + Agent.moveCost(grid, v, u);
+                if (d < dist[u]) {
+                    dist[u] = d;
+                    open.push(u, d);
+                }
+            }
+        }
+        return dist;
+    }
+
+    // fewest moves to a vertex
+    private static int[] breadthFirst(Grid grid, int goal) {
+        int[] dist = new int[grid.cells()];
+        Arrays.fill(dist, UNREACHABLE);
+        int[] queue = new int[grid.cells()];
+        int head = 0, tail = 0;
+        dist[goal] = 0;
+        queue[tail++] = goal;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int k = grid.firstNeighbor(v), end = grid.endNeighbor(v); k < end; k++) {
+                int u = grid.neighbor(k);
+                if (dist[u] == UNREACHABLE) {
+                    dist[u] = dist[v] + 1;
+                    queue[tail++] = u;
+                }
+            }
+        }
+        return dist;
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.Arrays;
+
+/**
+ * A binary min-heap over integer items in the range [0, capacity) that keeps track of the position of every item,
+ * so membership checks are constant time and keys can be decreased in place instead of re-inserting nodes.
+ */
+
+public class IndexedHeap {
+
+    // items in heap order
+    private int[] heap;
+    // position of every item inside of the heap, -1 if the item is not in the heap
+    private int[] pos;
+    // key of every item currently in the heap
+    private long[] key;
+    // number of items in the heap
+    private int size;
+
+    // simple constructor
+    public IndexedHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.pos = new int[capacity];
+        this.key = new long[capacity];
+        Arrays.fill(this.pos, -1);
+        this.size = 0;
+    }
+
+    // grows the heap so that items up to capacity - 1 can be stored
+    public void ensureCapacity(int capacity) {
+        if (capacity <= this.pos.length) return;
+        int old = this.pos.length;
+        int size = Math.max(capacity, old * 2);
+        this.heap = Arrays.copyOf(this.heap, size);
+        this.key = Arrays.copyOf(this.key, size);
+        this.pos = Arrays.copyOf(this.pos, size);
+        Arrays.fill(this.pos, old, size, -1);
+    }
+
+    // returns if the heap has no items
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    // returns the number of items in the heap
+    public int size() {
+        return this.size;
+    }
+
+    // returns if an item is in the heap
+    public boolean contains(int item) {
+        return this.pos[item] != -1;
+    }
+
+    // returns the key of an item in the heap
+    public long key(int item) {
+        return this.key[item];
+    }
+
+    // inserts an item or changes the key of an item already in the heap
+    public void push(int item, long k) {
+        int p = this.pos[item];
+        if (p == -1) {
+            p = this.size++;
+            this.heap[p] = item;
+            this.pos[item] = p;
+            this.key[item] = k;
+            siftUp(p);
+        } else if (k < this.key[item]) {
+            this.key[item] = k;
+            siftUp(p);
+        } else {
+            this.key[item] = k;
+            siftDown(p);
+        }
+    }
+
+    // removes and returns the item with the smallest key, -1 if the heap is empty
+    public int poll() {
+        if (this.size == 0) return -1;
+        int top = this.heap[0];
+        this.pos[top] = -1;
+        this.size--;
+        if (this.size > 0) {
+            int last = this.heap[this.size];
+            this.heap[0] = last;
+            this.pos[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    // removes all items, only touches the items that are still in the heap
+    public void clear() {
+        for (int p = 0; p < this.size; p++)
+            this.pos[this.heap[p]] = -1;
+        this.size = 0;
+    }
+
+    // moves the item at position p up until the heap property holds
+    private void siftUp(int p) {
+        int item = this.heap[p];
+        long k = this.key[item];
+        while (p > 0) {
+            int parent = (p - 1) >>> 1;
+            int pItem = this.heap[parent];
+            if (this.key[pItem] <= k) break;
+            this.heap[p] = pItem;
+            this.pos[pItem] = p;
+            p = parent;
+        }
+        this.heap[p] = item;
+        this.pos[item] = p;
+    }
+
+    // moves the item at position p down until the heap property holds
+    private void siftDown(int p) {
+        int item = this.heap[p];
+        long k = this.key[item];
+        int half = this.size >>> 1;
+        while (p < half) {
+            int child = 2 * p + 1;
+            int cItem = this.heap[child];
+            int right = child + 1;
+            if (right < this.size && this.key[this.heap[right]] < this.key[cItem]) {
+                child = right;
+                cItem = this.heap[child];
+            }
+            if (k <= this.key[cItem]) break;
+            this.heap[p] = cItem;
+            this.pos[cItem] = p;
+            p = child;
+        }
+        this.heap[p] = item;
+        this.pos[item] = p;
+    }
+}
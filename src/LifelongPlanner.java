@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Plans for robots that get a new task as soon as they reach their goal, following rolling-horizon collision
+ * resolution (Li et al., "Lifelong Multi-Agent Path Finding in Large-Scale Warehouses", AAAI 2021). Every cycle plans
+ * the agents one after another in priority order, each around the reservations of the ones before it, but collisions
+ * are only resolved for the next window time steps. The first commit steps of the plans are then carried out, agents
+ * that reached their goal get a new one and the next cycle starts from where the agents are, so the work of a cycle
+ * depends on the window rather than on how long the paths are.
+ *
+ * An agent that reaches its goal inside the window stays there until the window closes and reserves the goal for as
+ * long. Agents a cycle finds no path for are moved to the front of the priority order and the cycle is planned again,
+ * up to a number of restarts after which they wait where they are. The reservation table and the search arrays are
+ * kept from one cycle to the next and the distances to every goal are cached, so a goal is only searched from once.
+ */
+
+public class LifelongPlanner {
+
+    // hands out the tasks of the agents
+    public interface Tasks {
+        // returns the next goal of an agent that has reached its goal, which is the cell it is at
+        Cell next(int id, Cell at);
+    }
+
+    // board the agents move on
+    private Grid grid;
+    // number of time steps ahead collisions are resolved
+    private int window;
+    // number of time steps carried out per cycle
+    private int commit;
+    // source of new goals
+    private Tasks tasks;
+    // agents by ID
+    private HashMap<Integer, Agent> agents;
+    // agents in priority order, highest first
+    private ArrayList<Agent> order;
+    // reservations of the current window, time step 0 is the start of the cycle
+    private ReservationTable cat;
+    // number of times a cycle is planned again with the agents that failed first
+    private int restarts;
+    // receives the timings and counters of every cycle
+    private Metrics metrics;
+    // time steps carried out so far
+    private int time;
+    // tasks finished so far
+    private int completed;
+    // collisions carried out so far, only possible when an agent had to wait for lack of a path
+    private int collisions;
+
+    // planner looking window time steps ahead and carrying out commit of them per cycle, commit is at most window
+    public LifelongPlanner(Grid grid, int window, int commit, Tasks tasks) {
+        if (commit < 1 || commit > window)
+            throw new IllegalArgumentException("commit horizon " + commit + " not in [1, " + window + "]");
+        this.grid = grid;
+        this.window = window;
+        this.commit = commit;
+        this.tasks = tasks;
+        this.agents = new HashMap<>();
+        this.order = new ArrayList<>();
+        this.cat = new ReservationTable(grid);
+        this.restarts = 10;
+        this.metrics = Metrics.NONE;
+    }
+
+    // sets how often a cycle is planned again when some agent has no path
+    public void setRestarts(int restarts) {
+        this.restarts = restarts;
+    }
+
+    // sets where the timings and counters of every cycle are reported
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // adds an agent with the lowest priority so far, fails if its start and goal cannot be entered or another agent
+    // starts at the same cell
+    public boolean add(Agent a) {
+        if (this.agents.containsKey(a.getID()) || !this.grid.isPassable(a.getSI(), a.getSJ()) ||
+                !this.grid.isPassable(a.getEI(), a.getEJ()))
+            return false;
+        for (Agent b : this.order)
+            if (a.getSI() == b.getSI() && a.getSJ() == b.getSJ()) return false;
+        this.agents.put(a.getID(), a);
+        this.order.add(a);
+        return true;
+    }
+
+    // returns the agents by ID
+    public HashMap<Integer, Agent> getAgents() {
+        return this.agents;
+    }
+
+    // returns the number of time steps carried out so far
+    public int getTime() {
+        return this.time;
+    }
+
+    // returns the number of tasks finished so far
+    public int getCompleted() {
+        return this.completed;
+    }
+
+    // returns the number of collisions carried out so far
+    public int getCollisions() {
+        return this.collisions;
+    }
+
+    // plans the next window and carries out its first commit time steps, returns the cells every agent occupies
+    // during them by agent ID, starting with the cell it is at now
+    public HashMap<Integer, PackedPath> step() {
+        long start = this.metrics.start();
+        plan();
+        this.metrics.stop(Metrics.Phase.WINDOW_PLAN, start);
+        for (ConflictIndex.Conflict c : this.cat.conflicts().all())
+            if (c.time <= this.commit) this.collisions++;
+
+        HashMap<Integer, PackedPath> moves = new HashMap<>();
+        for (Agent a : this.order) {
+            PackedPath path = this.cat.get(a.getID());
+            moves.put(a.getID(), path.prefix(this.commit + 1));
+            Cell at = path.get(this.commit);
+            a.setStart(at.i, at.j);
+            if (arrived(a)) {
+                this.completed++;
+                Cell goal = this.tasks.next(a.getID(), at);
+                a.setGoal(goal.i, goal.j);
+            }
+        }
+        this.time += this.commit;
+        return moves;
+    }
+
+    // checks if the path of an agent reaches its goal within the committed steps, the search ends at the goal if the
+    // agent can stay there and otherwise the path runs until the window closes
+    private boolean arrived(Agent a) {
+        if (a.getPathCost() == -1 || a.getPathLength() - 1 > this.commit) return false;
+        return a.getPath().last() == this.grid.vertex(a.getEI(), a.getEJ());
+    }
+
+    // plans every agent for the next window in priority order, restarting with the agents that found no path first
+    private void plan() {
+        for (int attempt = 0; ; attempt++) {
+            for (Agent a : this.order) this.cat.remove(a.getID());
+            ArrayList<Agent> failed = new ArrayList<>();
+            for (Agent a : this.order) {
+                int id = a.getID();
+                a.windowedAStar((t, v) -> this.cat.isReservedByOther(t, v, id), this.window, this.metrics,
+                        Deadline.NONE);
+                if (a.getPathCost() == -1) failed.add(a);
+                this.cat.put(id, reservation(a));
+            }
+            if (failed.isEmpty() || attempt == this.restarts) return;
+            this.metrics.add(Metrics.Counter.WINDOW_RESTARTS, 1);
+            this.order.removeAll(new HashSet<>(failed));
+            this.order.addAll(0, failed);
+        }
+    }
+
+    // returns the cells an agent reserves for the window, an agent without a path waits where it is and one that
+    // arrives early stays at its goal
+    private PackedPath reservation(Agent a) {
+        if (a.getPathCost() != -1) return a.getPath().extend(this.window + 1);
+        return new PackedPath(this.grid, new int[]{this.grid.vertex(a.getSI(), a.getSJ())}).extend(this.window + 1);
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Receives timings and counters from a Game run, its A* searches and its SAT-solvers. The default NONE ignores
+ * everything and its methods are empty, so instrumented code costs a call the JIT inlines away, and callers guard any
+ * work that is only needed for reporting with enabled.
+ */
+
+public interface Metrics {
+
+    // phases of a run that are timed
+    enum Phase {
+        // the whole of Game.run
+        RUN,
+        // reserving paths and looking up the earliest collision
+        CONFLICT_SCAN,
+        // single agent A* replans of independence detection
+        ID_REPLAN,
+        // numbering variables and adding clauses to a SAT-solver
+        SAT_ENCODE,
+        // calls to a SAT-solver, including bound reduction
+        SAT_SEARCH,
+        // group replans by conflict-based search, including its low-level A* searches
+        CBS_SEARCH,
+        // group replans by operator decomposition A*
+        OD_SEARCH,
+        // planning a window of the lifelong planner
+        WINDOW_PLAN
+    }
+
+    // quantities that are counted
+    enum Counter {
+        // single agent replans attempted
+        ID_REPLANS,
+        // group replans handed to a SAT-solver
+        SAT_REPLANS,
+        // nodes expanded by A*
+        NODE_EXPANSIONS,
+        // lookups in the collision avoidance table by A*
+        CAT_PROBES,
+        // variables and clauses added to SAT-solvers
+        SAT_VARIABLES,
+        SAT_CLAUSES,
+        // conflicts and decisions of SAT-solvers
+        SAT_CONFLICTS,
+        SAT_DECISIONS,
+        // group replans handed to conflict-based search
+        CBS_REPLANS,
+        // constraint tree nodes expanded by conflict-based search and conflicts it bypassed instead of splitting on
+        CBS_NODES,
+        CBS_BYPASSES,
+        // group replans tried with operator decomposition A*, the ones it solved and the nodes it expanded
+        OD_REPLANS,
+        OD_SOLVED,
+        OD_NODES,
+        // windows of the lifelong planner planned again with the agents that found no path first
+        WINDOW_RESTARTS,
+        // merged groups given a plan stored by the group plan cache instead of being solved
+        GROUP_CACHE_HITS
+    }
+
+    // metrics that record nothing
+    Metrics NONE = new Metrics() {
+        public boolean enabled() { return false; }
+        public long start() { return 0; }
+        public void stop(Phase phase, long start) { }
+        public void add(Counter counter, long n) { }
+        public void merged(int groupSize) { }
+    };
+
+    // returns if anything is recorded
+    boolean enabled();
+
+    // returns a timestamp to pass to stop
+    long start();
+
+    // adds the time since a timestamp from start to a phase
+    void stop(Phase phase, long start);
+
+    // adds to a counter
+    void add(Counter counter, long n);
+
+    // records the size of a group after a merge
+    void merged(int groupSize);
+}
@@ -0,0 +1,105 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads maps and scenarios in the format of the MovingAI benchmark sets (https://movingai.com/benchmarks/formats.html).
+ * A map is a header giving its height and width followed by one line of characters per row, where '.', 'G' and 'S'
+ * can be entered and everything else is an obstacle. A scenario lists one start and goal per line, which
+ * ScenarioReader streams. Maps are cached by path so a sweep over many scenarios of one map parses it only once.
+ */
+
+public class MovingAI {
+
+    // a line of a scenario file
+    public static class Entry {
+        // bucket of the problem, grouping problems of similar optimal length
+        public final int bucket;
+        // name of the map as written in the scenario
+        public final String map;
+        // size of the map
+        public final int width, height;
+        // start and goal coordinates, x is the column and y the row from the top
+        public final int sx, sy, gx, gy;
+        // optimal length with octile moves and no other agents
+        public final double optimal;
+
+        public Entry(int bucket, String map, int width, int height, int sx, int sy, int gx, int gy, double optimal) {
+            this.bucket = bucket;
+            this.map = map;
+            this.width = width;
+            this.height = height;
+            this.sx = sx;
+            this.sy = sy;
+            this.gx = gx;
+            this.gy = gy;
+            this.optimal = optimal;
+        }
+    }
+
+    // maps parsed so far keyed by their absolute path
+    private static final ConcurrentHashMap<Path, Grid> MAPS = new ConcurrentHashMap<>();
+
+    // returns the map at a path, parsing it only the first time it is asked for
+    public static Grid map(Path file) throws IOException {
+        try {
+            return MAPS.computeIfAbsent(file.toAbsolutePath().normalize(), f -> {
+                try {
+                    return readMap(f);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // forgets every cached map
+    public static void clearMaps() {
+        MAPS.clear();
+    }
+
+    // parses a map file
+    public static Grid readMap(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            int width = -1, height = -1;
+            String line;
+            // header lines until "map"
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.equals("map")) break;
+                String[] field = line.split("\\s+");
+                if (field[0].equals("height")) height = Integer.parseInt(field[1]);
+                else if (field[0].equals("width")) width = Integer.parseInt(field[1]);
+            }
+            if (line == null || width < 0 || height < 0)
+                throw new IOException(file + ": missing height, width or map header");
+            long[] bits = new long[(int) (((long) width * height + 63) / 64)];
+            for (int y = 0; y < height; y++) {
+                line = in.readLine();
+                if (line == null || line.length() < width)
+                    throw new IOException(file + ": row " + y + " is missing or shorter than " + width);
+                for (int x = 0; x < width; x++) {
+                    char c = line.charAt(x);
+                    if (c == '.' || c == 'G' || c == 'S') {
+                        int i = y * width + x;
+                        bits[i >>> 6] |= 1L << i;
+                    }
+                }
+            }
+            return new Grid(width, height, bits);
+        }
+    }
+
+    // opens a scenario file for streaming
+    public static ScenarioReader scenario(Path file) throws IOException {
+        return new ScenarioReader(file);
+    }
+}
@@ -0,0 +1,232 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+
+/**
+ * A* over the joint moves of a small group of agents with operator decomposition, from "Finding Optimal Solutions to
+ * Cooperative Pathfinding Problems" by Standley in 2010. Instead of branching on every combination of moves at once,
+ * the agents move one after another, so a time step of a group of k agents is k levels of at most ten successors each
+ * and the heuristic prunes a bad move of the first agent before the others are expanded.
+ *
+ * The cost of a plan is the sum of the path costs and the heuristic the sum of the exact costs to every goal from
+ * HeuristicCache. An agent standing on its goal may finish, after which it leaves the board like at the end of any
+ * path. Cells reserved by agents outside of the group are avoided. The search gives up after a node budget, so a group
+ * that is too hard for it can be handed to a SAT-solver or conflict-based search instead.
+ */
+
+public class ODAStar {
+
+    // number of expanded nodes between two checks of the deadline
+    private static final int DEADLINE_CHECK = 256;
+
+    // a state of the search, time t with the agents before next already moved to time t + 1
+    private static class Node {
+        // time step and index of the agent that moves next
+        final int t, next;
+        // vertex of every agent, -1 once it has finished
+        final int[] pos;
+        // cost so far and the estimate of the cost to go
+        final int g, h;
+        // state this one was reached from
+        final Node parent;
+
+        Node(int t, int next, int[] pos, int g, int h, Node parent) {
+            this.t = t;
+            this.next = next;
+            this.pos = pos;
+            this.g = g;
+            this.h = h;
+            this.parent = parent;
+        }
+    }
+
+    // identity of a state for duplicate detection
+    private static class Key {
+        final int[] state;
+        final int hash;
+
+        Key(Node n) {
+            this.state = new int[n.pos.length + 2];
+            this.state[0] = n.t;
+            this.state[1] = n.next;
+            System.arraycopy(n.pos, 0, this.state, 2, n.pos.length);
+            this.hash = Arrays.hashCode(this.state);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(this.state, ((Key) o).state);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    // makespan bound, no path may be longer
+    private int bound;
+    // board the agents move on
+    private Grid grid;
+    // most nodes expanded by a single call before giving up
+    private int nodeLimit;
+    // receives search times and counters
+    private Metrics metrics;
+    // time by which a call gives up
+    private Deadline deadline;
+
+    // simple constructor
+    public ODAStar(int bound, Grid grid) {
+        this.bound = bound;
+        this.grid = grid;
+        this.nodeLimit = 10000;
+        this.metrics = Metrics.NONE;
+        this.deadline = Deadline.NONE;
+    }
+
+    // sets the most nodes a call may expand before it gives up
+    public void setNodeLimit(int nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    // returns the most nodes a call may expand before it gives up
+    public int getNodeLimit() {
+        return this.nodeLimit;
+    }
+
+    // sets where search times and counters are reported
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // sets the time by which a call gives up and returns -1
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    // plans a group of agents around the reservations of every other agent (leave cat null if there are none), sets
+    // their paths and updates cat, returns the makespan of the group or -1 if no plan was found within the bound and
+    // the node budget or before the deadline, in which case the agents keep their paths
+    public int solve(int[] conflictIDs, HashMap<Integer, Agent> agents, ReservationTable cat) {
+        long start = this.metrics.start();
+        try {
+            return search(conflictIDs, agents, cat);
+        }
+        finally {
+            this.metrics.stop(Metrics.Phase.OD_SEARCH, start);
+        }
+    }
+
+    // body of solve
+    private int search(int[] conflictIDs, HashMap<Integer, Agent> agents, ReservationTable cat) {
+        int k = conflictIDs.length;
+        Agent[] members = new Agent[k];
+        int[] goals = new int[k];
+        int[][] h = new int[k][];
+        HashSet<Integer> group = new HashSet<>();
+        int[] pos = new int[k];
+        int h0 = 0;
+        int i = 0;
+        for (int id : conflictIDs) {
+            Agent a = agents.get(id);
+            members[i] = a;
+            group.add(id);
+            goals[i] = this.grid.vertex(a.getEI(), a.getEJ());
+            h[i] = HeuristicCache.shared().costs(this.grid, goals[i]);
+            pos[i] = this.grid.vertex(a.getSI(), a.getSJ());
+            if (h[i][pos[i]] == HeuristicCache.UNREACHABLE) return -1;
+            h0 += h[i][pos[i]];
+            i++;
+        }
+
+        // lowest estimate first, then the state closest to the goals
+        PriorityQueue<Node> open = new PriorityQueue<>((n1, n2) -> n1.g + n1.h != n2.g + n2.h ?
+                Integer.compare(n1.g + n1.h, n2.g + n2.h) : Integer.compare(n1.h, n2.h));
+        HashSet<Key> closed = new HashSet<>();
+        open.add(new Node(0, 0, pos, 0, h0, null));
+        int expanded = 0;
+        try {
+            while (!open.isEmpty() && expanded < this.nodeLimit) {
+                Node n = open.poll();
+                if (!closed.add(new Key(n))) continue;
+                if (++expanded % DEADLINE_CHECK == 0 && this.deadline.isExpired()) break;
+                if (n.h == 0 && n.next == 0 && finished(n)) return apply(n, members, cat);
+
+                int a = n.next;
+                int nextAgent = (a + 1) % k;
+                int t = nextAgent == 0 ? n.t + 1 : n.t;
+                int v = n.pos[a];
+                if (v == -1) {
+                    // finished agents have no moves
+                    open.add(new Node(t, nextAgent, n.pos, n.g, n.h, n));
+                    continue;
+                }
+                // finish, leaving the board
+                if (v == goals[a]) {
+                    int[] p = n.pos.clone();
+                    p[a] = -1;
+                    open.add(new Node(t, nextAgent, p, n.g, n.h, n));
+                }
+                // the path of an agent that does not finish goes on to the next time step, which must be within bound
+                if (n.t + 1 >= this.bound) continue;
+                int first = this.grid.firstNeighbor(v);
+                for (int e = first - 1, end = this.grid.endNeighbor(v); e < end; e++) {
+                    int u = e < first ? v : this.grid.neighbor(e);
+                    if (isBlocked(n, a, u, group, cat)) continue;
+                    int[] p = n.pos.clone();
+                    p[a] = u;
+                    int g = n.g + (u == v ? 0 : Agent.moveCost(this.grid, v, u));
+                    open.add(new Node(t, nextAgent, p, g, n.h - h[a][v] + h[a][u], n));
+                }
+            }
+            return -1;
+        }
+        finally {
+            this.metrics.add(Metrics.Counter.OD_NODES, expanded);
+        }
+    }
+
+    // checks if every agent has finished
+    private boolean finished(Node n) {
+        for (int v : n.pos)
+            if (v != -1) return false;
+        return true;
+    }
+
+    // checks if agent a may not move to vertex u at the next time step, because an agent of the group that already
+    // moved is there or an agent outside of the group reserved it
+    private boolean isBlocked(Node n, int a, int u, HashSet<Integer> group, ReservationTable cat) {
+        for (int b = 0; b < a; b++)
+            if (n.pos[b] == u) return true;
+        return cat != null && cat.isReservedOutside(n.t + 1, u, group);
+    }
+
+    // gives the agents the paths of a plan and reserves them, returns the makespan
+    private int apply(Node goal, Agent[] members, ReservationTable cat) {
+        // the states between time steps in order of time
+        ArrayList<Node> steps = new ArrayList<>();
+        for (Node n = goal; n != null; n = n.parent)
+            if (n.next == 0) steps.add(n);
+        int mpl = -1;
+        for (int i = 0; i < members.length; i++) {
+            Agent a = members[i];
+            int[] vertices = new int[steps.size()];
+            int length = 0;
+            int cost = 0;
+            for (int s = steps.size() - 1; s >= 0 && steps.get(s).pos[i] != -1; s--) {
+                int v = steps.get(s).pos[i];
+                if (length > 0 && vertices[length - 1] != v)
+                    cost += Agent.moveCost(this.grid, vertices[length - 1], v);
+                vertices[length++] = v;
+            }
+            PackedPath path = new PackedPath(this.grid, vertices, length);
+            a.setPath(path);
+            a.setPathCost(cost);
+            if (cat != null) cat.put(a.getID(), path);
+            mpl = Math.max(mpl, path.size());
+        }
+        return mpl;
+    }
+}
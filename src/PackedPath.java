@@ -0,0 +1,96 @@
+import java.util.Arrays;
+
+/**
+ * An immutable path of an agent on a grid, stored as the vertex it occupies at every time step from 0. A vertex is
+ * four bytes where a Cell took an object header, a reference and the fields its search used to need, so a fleet with
+ * long paths takes a fraction of the memory, and two positions are compared as ints.
+ */
+
+public class PackedPath {
+
+    // board the path is on, turns vertices into coordinates
+    private final Grid grid;
+    // vertex at every time step, only the first length entries belong to the path
+    private final int[] vertices;
+    // number of time steps
+    private final int length;
+
+    // path over the first length vertices of an array, the array is handed over and must not be changed afterwards
+    public PackedPath(Grid grid, int[] vertices, int length) {
+        this.grid = grid;
+        this.vertices = vertices;
+        this.length = length;
+    }
+
+    // path over every vertex of an array, which is handed over and must not be changed afterwards
+    public PackedPath(Grid grid, int[] vertices) {
+        this(grid, vertices, vertices.length);
+    }
+
+    // returns the number of time steps
+    public int size() {
+        return this.length;
+    }
+
+    // returns the vertex at a time step
+    public int vertex(int t) {
+        return this.vertices[t];
+    }
+
+    // returns the vertex at the last time step
+    public int last() {
+        return this.vertices[this.length - 1];
+    }
+
+    // returns the x-coordinate at a time step
+    public int x(int t) {
+        return this.grid.x(this.vertices[t]);
+    }
+
+    // returns the y-coordinate at a time step
+    public int y(int t) {
+        return this.grid.y(this.vertices[t]);
+    }
+
+    // returns the cell at a time step
+    public Cell get(int t) {
+        return new Cell(x(t), y(t));
+    }
+
+    // returns the first length time steps of the path
+    public PackedPath prefix(int length) {
+        return length >= this.length ? this : new PackedPath(this.grid, this.vertices, length);
+    }
+
+    // returns the path followed by waiting at its last vertex until it is length time steps long
+    public PackedPath extend(int length) {
+        if (length <= this.length) return this;
+        int[] v = Arrays.copyOf(this.vertices, length);
+        Arrays.fill(v, this.length, length, last());
+        return new PackedPath(this.grid, v, length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PackedPath)) return false;
+        PackedPath p = (PackedPath) o;
+        return this.length == p.length && Arrays.equals(this.vertices, 0, this.length, p.vertices, 0, p.length);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (int t = 0; t < this.length; t++) h = 31 * h + this.vertices[t];
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int t = 0; t < this.length; t++) {
+            if (t > 0) sb.append(", ");
+            sb.append('[').append(x(t)).append(", ").append(y(t)).append(']');
+        }
+        return sb.append(']').toString();
+    }
+}
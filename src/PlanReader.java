@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads plans written by PlanWriter. The file is memory-mapped and only its header is read when it is opened, so
+ * plans of thousands of agents open in constant time and the operating system pages in only the columns that are
+ * looked at. Agents are addressed by their index in the agent table, which is in ascending order of ID.
+ */
+
+public class PlanReader {
+
+    // file being read
+    private Path file;
+    // contents of the file
+    private MappedByteBuffer buffer;
+    // size of the grid the plan is on
+    private int width, height;
+    // number of agents and time steps
+    private int agents, makespan;
+    // bytes of a vertex, 2 or 4
+    private int vertexBytes;
+    // offset of the first column
+    private long columns;
+
+    // opens a plan file and checks that its header matches its size
+    public PlanReader(Path file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException(file + ": plans of 2 GB or more cannot be mapped");
+            if (size < PlanWriter.HEADER) throw new IOException(file + ": too short for a plan header");
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (this.buffer.getInt(0) != PlanWriter.MAGIC) throw new IOException(file + ": not a plan file");
+        int version = this.buffer.getInt(4);
+        if (version != PlanWriter.VERSION) throw new IOException(file + ": unsupported plan version " + version);
+        this.width = this.buffer.getInt(8);
+        this.height = this.buffer.getInt(12);
+        this.agents = this.buffer.getInt(16);
+        this.makespan = this.buffer.getInt(20);
+        this.vertexBytes = this.buffer.getInt(24);
+        if (this.width < 0 || this.height < 0 || this.agents < 0 || this.makespan < 0 ||
+                this.vertexBytes != PlanWriter.vertexBytes(this.width * this.height))
+            throw new IOException(file + ": corrupt plan header");
+        this.columns = PlanWriter.HEADER + 8L * this.agents;
+        long expected = this.columns + (long) this.vertexBytes * this.agents * this.makespan;
+        if (expected != this.buffer.capacity())
+            throw new IOException(file + ": expected " + expected + " bytes but got " + this.buffer.capacity());
+    }
+
+    // returns the width of the grid
+    public int width() {
+        return this.width;
+    }
+
+    // returns the height of the grid
+    public int height() {
+        return this.height;
+    }
+
+    // returns the number of agents
+    public int agents() {
+        return this.agents;
+    }
+
+    // returns the longest path length
+    public int makespan() {
+        return this.makespan;
+    }
+
+    // returns the ID of the agent at an index of the agent table
+    public int id(int k) {
+        return this.buffer.getInt(PlanWriter.HEADER + 8 * k);
+    }
+
+    // returns the path length of the agent at an index of the agent table
+    public int length(int k) {
+        return this.buffer.getInt(PlanWriter.HEADER + 8 * k + 4);
+    }
+
+    // returns the index of an agent in the agent table, -1 if there is no agent with the ID
+    public int index(int id) {
+        int lo = 0, hi = this.agents - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int m = id(mid);
+            if (m < id) lo = mid + 1;
+            else if (m > id) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    // returns the vertex the agent at an index occupies at a time step, PlanWriter.NONE once its path has ended
+    public int vertex(int k, int t) {
+        if (k < 0 || k >= this.agents) throw new IndexOutOfBoundsException("agent " + k + " of " + this.agents);
+        if (t < 0 || t >= this.makespan) return PlanWriter.NONE;
+        int at = (int) (this.columns + (long) this.vertexBytes * ((long) t * this.agents + k));
+        if (this.vertexBytes == 4) return this.buffer.getInt(at);
+        int v = this.buffer.getShort(at) & 0xFFFF;
+        return v == 0xFFFF ? PlanWriter.NONE : v;
+    }
+
+    // returns the x-coordinate of the agent at an index at a time step, the agent must still be on the board
+    public int x(int k, int t) {
+        return vertex(k, t) % this.width;
+    }
+
+    // returns the y-coordinate of the agent at an index at a time step, the agent must still be on the board
+    public int y(int k, int t) {
+        return vertex(k, t) / this.width;
+    }
+
+    // returns the whole path of the agent at an index on a grid of the size of the plan
+    public PackedPath path(int k, Grid grid) {
+        if (grid.width() != this.width || grid.height() != this.height)
+            throw new IllegalArgumentException(this.file + ": plan is on a " + this.width + " x " + this.height +
+                    " grid");
+        int[] vertices = new int[length(k)];
+        for (int t = 0; t < vertices.length; t++) vertices[t] = vertex(k, t);
+        return new PackedPath(grid, vertices);
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Outcome of a Game planned against a deadline. Besides whether the instance was solved it holds the paths of every
+ * agent as they were when planning stopped, how many time steps from the start of those paths are free of collisions,
+ * the groups that still collide and the time spent in each phase, so a caller running out of time can still act on
+ * the part of the plan that is known to be safe.
+ */
+
+public class PlanResult {
+
+    // how planning ended
+    public enum Status {
+        // every collision was resolved
+        SOLVED,
+        // some group has no plan within the makespan bound
+        FAILED,
+        // the deadline passed before every collision was resolved
+        TIMED_OUT
+    }
+
+    // how planning ended
+    private Status status;
+    // longest path length
+    private int makespan;
+    // path of every agent keyed by agent ID
+    private HashMap<Integer, PackedPath> paths;
+    // number of time steps from the start during which no two agents collide
+    private int conflictFreePrefix;
+    // IDs of the agents of every group that still collides with another
+    private List<List<Integer>> unresolved;
+    // timings and counters of the run
+    private RunMetrics metrics;
+
+    // simple constructor
+    public PlanResult(Status status, int makespan, HashMap<Integer, PackedPath> paths, int conflictFreePrefix,
+                      List<List<Integer>> unresolved, RunMetrics metrics) {
+        this.status = status;
+        this.makespan = makespan;
+        this.paths = paths;
+        this.conflictFreePrefix = conflictFreePrefix;
+        this.unresolved = unresolved;
+        this.metrics = metrics;
+    }
+
+    // returns how planning ended
+    public Status getStatus() {
+        return this.status;
+    }
+
+    // returns if every collision was resolved
+    public boolean isSolved() {
+        return this.status == Status.SOLVED;
+    }
+
+    // returns the longest path length
+    public int getMakespan() {
+        return this.makespan;
+    }
+
+    // returns the path of every agent keyed by agent ID
+    public HashMap<Integer, PackedPath> getPaths() {
+        return this.paths;
+    }
+
+    // returns the number of time steps from the start during which no two agents collide, the paths can be followed
+    // up to but not including this index, equal to the makespan once solved
+    public int getConflictFreePrefix() {
+        return this.conflictFreePrefix;
+    }
+
+    // returns the IDs of the agents of every group that still collides with another, empty once solved
+    public List<List<Integer>> getUnresolved() {
+        return this.unresolved;
+    }
+
+    // returns the timings and counters of the run
+    public RunMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    @Override
+    public String toString() {
+        return this.status + " makespan=" + this.makespan + " prefix=" + this.conflictFreePrefix +
+                " unresolved=" + this.unresolved;
+    }
+}
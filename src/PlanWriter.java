@@ -0,0 +1,100 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Writes solved plans in a compact binary format that PlanReader maps into memory. All numbers are big-endian:
+ *
+ *   header        magic "MAPF", version, grid width, grid height, number of agents, makespan, bytes per vertex and
+ *                 a reserved zero, eight ints in all
+ *   agent table   ID and path length of every agent in ascending order of ID, two ints each
+ *   columns       one column per time step from 0 to makespan - 1, holding the vertex of every agent in the order of
+ *                 the agent table, NONE once its path has ended
+ *
+ * A vertex takes two bytes on grids of fewer than 65535 cells and four otherwise. The position of any agent at any
+ * time step is at a fixed offset, so a reader never has to look at the rest of the plan. The columns are written one
+ * after another straight from the paths, only the agent order and the current column are buffered.
+ */
+
+public class PlanWriter implements AutoCloseable {
+
+    // first four bytes of every plan, "MAPF" in ASCII
+    public static final int MAGIC = 0x4D415046;
+    // version of the format written
+    public static final int VERSION = 1;
+    // bytes of the header
+    public static final int HEADER = 32;
+    // vertex of an agent whose path has ended
+    public static final int NONE = -1;
+
+    // stream the plan goes to
+    private DataOutputStream out;
+
+    // writer on a stream, which is closed with the writer
+    public PlanWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+    }
+
+    // writes the paths of a game to a file, replacing it if it exists
+    public static void write(Path file, Grid grid, Map<Integer, PackedPath> paths) throws IOException {
+        try (PlanWriter writer = new PlanWriter(Files.newOutputStream(file))) {
+            writer.write(grid, paths);
+        }
+    }
+
+    // returns the bytes a vertex takes on a grid
+    static int vertexBytes(int cells) {
+        return cells < 0xFFFF ? 2 : 4;
+    }
+
+    // writes a plan of paths keyed by agent ID on a grid
+    public void write(Grid grid, Map<Integer, PackedPath> paths) throws IOException {
+        int[] ids = new int[paths.size()];
+        int n = 0;
+        for (int id : paths.keySet()) ids[n++] = id;
+        Arrays.sort(ids);
+        PackedPath[] ordered = new PackedPath[n];
+        int makespan = 0;
+        for (int k = 0; k < n; k++) {
+            ordered[k] = paths.get(ids[k]);
+            makespan = Math.max(makespan, ordered[k].size());
+        }
+        int bytes = vertexBytes(grid.cells());
+
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.writeInt(grid.width());
+        this.out.writeInt(grid.height());
+        this.out.writeInt(n);
+        this.out.writeInt(makespan);
+        this.out.writeInt(bytes);
+        this.out.writeInt(0);
+        for (int k = 0; k < n; k++) {
+            this.out.writeInt(ids[k]);
+            this.out.writeInt(ordered[k].size());
+        }
+        // a column is filled in a buffer of its own and written at once
+        ByteBuffer column = ByteBuffer.allocate(n * bytes);
+        for (int t = 0; t < makespan; t++) {
+            column.clear();
+            for (PackedPath p : ordered) {
+                int v = t < p.size() ? p.vertex(t) : NONE;
+                if (bytes == 2) column.putShort((short) v);
+                else column.putInt(v);
+            }
+            this.out.write(column.array(), 0, column.position());
+        }
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * A time-indexed reservation table that replaces the map of paths previously used as the collision avoidance table.
+ * Every time step owns a dense layer over the vertices of the grid storing how many agents occupy each vertex along
+ * with the xor of their IDs, so "is (t, x, y) reserved by someone other than me" is answered in constant time and a
+ * single occupant can be recovered without walking any paths.
+ *
+ * Time steps are indexed from 0 so that the reservation at time t is the cell at index t of an agent's path.
+ */
+
+public class ReservationTable {
+
+    // board the reserved paths are on
+    private Grid grid;
+    // number of vertices in a single time layer
+    private int vertices;
+    // number of agents occupying a vertex at a time step, indexed by [time][vertex]
+    private int[][] count;
+    // xor of the IDs of all agents occupying a vertex at a time step, indexed by [time][vertex]
+    private int[][] owners;
+    // paths currently reserved by each agent
+    private HashMap<Integer, PackedPath> paths;
+    // cells reserved by more than one agent
+    private ConflictIndex conflicts;
+
+    // simple constructor for an obstacle-free l x l board
+    public ReservationTable(int l) {
+        this(Grid.open(l));
+    }
+
+    // reservation table over the cells of a grid
+    public ReservationTable(Grid grid) {
+        this.grid = grid;
+        this.vertices = grid.cells();
+        this.count = new int[0][];
+        this.owners = new int[0][];
+        this.paths = new HashMap<>();
+        this.conflicts = new ConflictIndex(grid);
+    }
+
+    // gets the vertex index of a coordinate inside of a time layer
+    private int vertex(int x, int y) {
+        return this.grid.vertex(x, y);
+    }
+
+    // makes sure that time layers up to and including time exist
+    private void ensureLayers(int time) {
+        if (time < this.count.length) return;
+        int old = this.count.length;
+        int size = Math.max(time + 1, old * 2);
+        this.count = Arrays.copyOf(this.count, size);
+        this.owners = Arrays.copyOf(this.owners, size);
+        for (int t = old; t < size; t++) {
+            this.count[t] = new int[this.vertices];
+            this.owners[t] = new int[this.vertices];
+        }
+    }
+
+    // reserves every cell of a path for an agent
+    private void reserve(int id, PackedPath path) {
+        ensureLayers(path.size() - 1);
+        for (int t = 0; t < path.size(); t++) {
+            int v = path.vertex(t);
+            this.conflicts.occupy(t, v, id, this.count[t][v], this.owners[t][v]);
+            this.count[t][v]++;
+            this.owners[t][v] ^= id;
+        }
+    }
+
+    // releases every cell of a path that was reserved by an agent
+    private void release(int id, PackedPath path) {
+        for (int t = 0; t < path.size(); t++) {
+            int v = path.vertex(t);
+            this.count[t][v]--;
+            this.owners[t][v] ^= id;
+            this.conflicts.vacate(t, v, id, this.count[t][v]);
+        }
+    }
+
+    // replaces the path reserved by an agent, returns the previously reserved path
+    public PackedPath put(int id, PackedPath path) {
+        PackedPath old = remove(id);
+        this.paths.put(id, path);
+        reserve(id, path);
+        return old;
+    }
+
+    // releases the path reserved by an agent, returns the released path
+    public PackedPath remove(int id) {
+        PackedPath old = this.paths.remove(id);
+        if (old != null) release(id, old);
+        return old;
+    }
+
+    // returns the path reserved by an agent
+    public PackedPath get(int id) {
+        return this.paths.get(id);
+    }
+
+    // returns the IDs of all agents with a reserved path
+    public Set<Integer> agents() {
+        return this.paths.keySet();
+    }
+
+    // returns the number of agents occupying a cell at a time step
+    public int occupants(int time, int x, int y) {
+        if (time < 0 || time >= this.count.length) return 0;
+        return this.count[time][vertex(x, y)];
+    }
+
+    // returns the ID of the only agent occupying a cell at a time step, 0 if the cell is free or shared
+    public int owner(int time, int x, int y) {
+        return occupants(time, x, y) == 1 ? this.owners[time][vertex(x, y)] : 0;
+    }
+
+    // checks if a cell is reserved at a time step by an agent other than the one given
+    public boolean isReservedByOther(int time, int x, int y, int id) {
+        return isReservedByOther(time, vertex(x, y), id);
+    }
+
+    // checks if a vertex of the grid is reserved at a time step by an agent other than the one given
+    public boolean isReservedByOther(int time, int v, int id) {
+        if (time < 0 || time >= this.count.length) return false;
+        int c = this.count[time][v];
+        return c > 1 || (c == 1 && this.owners[time][v] != id);
+    }
+
+    // checks if a cell is reserved at a time step by an agent that is not part of a group
+    public boolean isReservedOutside(int time, int x, int y, Set<Integer> group) {
+        return isReservedOutside(time, vertex(x, y), group);
+    }
+
+    // checks if a vertex of the grid is reserved at a time step by an agent that is not part of a group
+    public boolean isReservedOutside(int time, int v, Set<Integer> group) {
+        if (time < 0 || time >= this.count.length) return false;
+        int c = this.count[time][v];
+        if (c == 0) return false;
+        if (c == 1) return !group.contains(this.owners[time][v]);
+        for (int k : this.conflicts.occupants(time, v))
+            if (!group.contains(k)) return true;
+        return false;
+    }
+
+    // returns another agent occupying the same cell as the given agent at a time step, 0 if there is none
+    public int otherOccupant(int time, int x, int y, int id) {
+        int c = occupants(time, x, y);
+        if (c < 2) return 0;
+        if (c == 2) return this.owners[time][vertex(x, y)] ^ id;
+        // more than two agents share the cell so the xor no longer identifies one
+        int other = 0;
+        for (int k : this.conflicts.occupants(time, vertex(x, y)))
+            if (k != id && (other == 0 || k < other)) other = k;
+        return other;
+    }
+
+    // returns the collisions between the reserved paths, kept up to date as paths are replaced
+    public ConflictIndex conflicts() {
+        return this.conflicts;
+    }
+}
@@ -0,0 +1,135 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics of a single run, exported as a JSON line or a CSV row. Timers and counters are atomic because the
+ * configurations of a SAT portfolio report from their own threads, so with a portfolio the SAT phases add up the time
+ * of every configuration rather than wall-clock time.
+ */
+
+public class RunMetrics implements Metrics {
+
+    // name of the run in the export
+    private String label;
+    // nanoseconds spent per phase
+    private AtomicLongArray nanos;
+    // value per counter
+    private AtomicLongArray counts;
+    // sizes of the groups after every merge in order
+    private ArrayList<Integer> groups;
+
+    // simple constructor
+    public RunMetrics(String label) {
+        this.label = label;
+        this.nanos = new AtomicLongArray(Phase.values().length);
+        this.counts = new AtomicLongArray(Counter.values().length);
+        this.groups = new ArrayList<>();
+    }
+
+    public boolean enabled() {
+        return true;
+    }
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void stop(Phase phase, long start) {
+        this.nanos.addAndGet(phase.ordinal(), System.nanoTime() - start);
+    }
+
+    public void add(Counter counter, long n) {
+        this.counts.addAndGet(counter.ordinal(), n);
+    }
+
+    public synchronized void merged(int groupSize) {
+        this.groups.add(groupSize);
+    }
+
+    // returns the name of the run
+    public String getLabel() {
+        return this.label;
+    }
+
+    // returns the nanoseconds spent in a phase
+    public long getNanos(Phase phase) {
+        return this.nanos.get(phase.ordinal());
+    }
+
+    // returns the value of a counter
+    public long getCount(Counter counter) {
+        return this.counts.get(counter.ordinal());
+    }
+
+    // returns the sizes of the groups after every merge in order
+    public synchronized List<Integer> getGroupSizes() {
+        return new ArrayList<>(this.groups);
+    }
+
+    // helper that turns a phase or counter into a column name
+    private static String column(Enum<?> e) {
+        return e.name().toLowerCase(Locale.ROOT);
+    }
+
+    // returns the run as a single line of JSON
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\"run\":\"");
+        for (char c : this.label.toCharArray()) {
+            if (c == '"' || c == '\\') sb.append('\\');
+            sb.append(c);
+        }
+        sb.append('"');
+        for (Phase p : Phase.values())
+            sb.append(",\"").append(column(p)).append("_ns\":").append(getNanos(p));
+        for (Counter c : Counter.values())
+            sb.append(",\"").append(column(c)).append("\":").append(getCount(c));
+        sb.append(",\"group_sizes\":").append(getGroupSizes().toString().replace(" ", "")).append('}');
+        return sb.toString();
+    }
+
+    // returns the header row of the CSV export
+    public static String csvHeader() {
+        StringBuilder sb = new StringBuilder("run");
+        for (Phase p : Phase.values())
+            sb.append(',').append(column(p)).append("_ns");
+        for (Counter c : Counter.values())
+            sb.append(',').append(column(c));
+        return sb.append(",group_sizes").toString();
+    }
+
+    // returns the run as a CSV row, group sizes are separated by semicolons
+    public String toCsv() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('"').append(this.label.replace("\"", "\"\"")).append('"');
+        for (Phase p : Phase.values())
+            sb.append(',').append(getNanos(p));
+        for (Counter c : Counter.values())
+            sb.append(',').append(getCount(c));
+        sb.append(',');
+        List<Integer> sizes = getGroupSizes();
+        for (int i = 0; i < sizes.size(); i++)
+            sb.append(i == 0 ? "" : ";").append(sizes.get(i));
+        return sb.toString();
+    }
+
+    // writes runs to a file, as CSV if its name ends with .csv and as JSON lines otherwise
+    public static void write(List<RunMetrics> runs, String file) throws IOException {
+        boolean csv = file.toLowerCase(Locale.ROOT).endsWith(".csv");
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(file))) {
+            if (csv) {
+                out.write(csvHeader());
+                out.newLine();
+            }
+            for (RunMetrics m : runs) {
+                out.write(csv ? m.toCsv() : m.toJson());
+                out.newLine();
+            }
+        }
+    }
+}
@@ -3,8 +3,18 @@ import org.sat4j.minisat.SolverFactory;
 import org.sat4j.specs.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Eric He on 5/2/17.
@@ -14,407 +24,862 @@ import java.util.LinkedList;
  * by Surynek in 2014. There are some modifications made as well that account for the collision avoidance table in
  * independence detection and bound reduction to get a pareto efficient paths with respect to makespan. Uses sat4j as
  * the SAT solver.
+ *
+ * The makespan is searched upwards from its lower bound, the largest number of moves an agent of the group needs to
+ * reach its goal, instead of encoding every time step up to the bound at once. Time steps are added to the encoding as
+ * layers of new variables and clauses, so the formula of a larger makespan extends the one before and keeps its
+ * learned clauses, and arriving by a makespan is an assumption rather than a clause. The horizon grows by a fixed
+ * increment or doubles and is then narrowed down by binary search, as in "Planning as satisfiability: parallel plans
+ * and algorithms for plan search" by Rintanen et al. in 2006. Most groups can arrive within a few steps of the lower
+ * bound, so their formulas are a fraction of the size of the full bound.
  */
 
 public class SATSolve {
 
-    // class that represents a time (i), vertex (j), and agent (k); the choice of this is based off of the
-    // propositional variables in Surynek's paper.
-    class Triple {
-        int i, j, k;
-
-        public Triple(int i, int j, int k) {
-            this.i = i;
-            this.j = j;
-            this.k = k;
-        }
-
-        public int getI() {return this.i;}
-        public int getJ() {return this.j;}
-        public int getK() {return this.k;}
-        public String toString() {return "(" + this.i + ", " + this.j + ", " + this.k + ")";}
+    // how the makespan of a group is searched
+    public enum MakespanSearch {
+        // encode every time step up to the bound at once and shorten the paths from there
+        FIXED,
+        // start at the lower bound and add a fixed number of time steps until the group can arrive
+        INCREMENT,
+        // start at the lower bound, add twice as many time steps each time until the group can arrive and then
+        // binary search between the last makespan that failed and the one that worked
+        EXPONENTIAL
     }
 
-    // an initial makespan bound
+    // largest makespan a group may be planned with, the encoding never goes past it
     private int bound;
-    // number of vertices on the board: a square integer
+    // board the agents move on, only its passable cells get variables
+    private Grid grid;
+    // number of vertices on the board: width times height
     private int vertices;
-    // total number of agents in the game such that all robots iDs are less than or equal to this
-    private int agents;
-    // length of the board aka the square root of the vertices
-    private int l;
+    // encoding used for the at-most-one constraints
+    private AtMostOne encoding;
+    // variables of the encoded agents indexed by [agent index][time], a layer holds the x, y, width and height of the
+    // box around the cells the agent can be at then followed by the variable of every cell of the box row by row, 0 if
+    // pruned. A layer without any cell is null, so the memory of an agent follows the cells it can reach
+    private ArrayList<int[][]> vars;
+    // agents encoded so far in the order of their index
+    private ArrayList<Agent> members;
+    // per encoded agent and time step, a variable that is true if the agent stays at its goal from then on, 0 if the
+    // agent cannot be at its goal at that time
+    private ArrayList<int[]> done;
+    // per encoded agent and time step, a variable that is true if the agent is at its goal but will leave it again
+    private ArrayList<int[]> passing;
+    // solver holding the clauses of every encoded agent, kept between calls so a growing group is not re-encoded
+    private ISolver solver;
+    // next unused variable
+    private int nextVar;
+    // name of the sat4j solver configuration, one of the names known to SolverFactory
+    private String solverName;
+    // configurations raced in parallel on every call, null if the portfolio is disabled
+    private SATSolve[] portfolio;
+    // set when the portfolio race this configuration takes part in has been decided
+    private volatile boolean stopped;
+    // paths found by this configuration in the last portfolio race
+    private HashMap<Integer, PackedPath> result;
+    // configuration that produced the answer of the last call
+    private String winner;
+    // receives encoding and search statistics
+    private Metrics metrics;
+    // decisions and conflicts of the solver when they were last reported to metrics
+    private long decisions, conflicts;
+    // time by which a call gives up, its remainder is the timeout of every call to sat4j
+    private Deadline deadline;
+    // truth value of every variable in the last model
+    private boolean[] truth;
+    // how the makespan of a group is searched
+    private MakespanSearch search;
+    // number of time steps the horizon grows by at a time with MakespanSearch.INCREMENT
+    private int step;
+    // number of time steps encoded for every agent so far, at most bound
+    private int horizon;
+    // fewest moves from the start and to the goal of every encoded agent from every cell, in the order of their index
+    private ArrayList<int[]> fromStart, toGoal;
+    // reservations of the rest of the fleet as assumptions over every encoded time step, rebuilt on every call
+    private IVecInt blocked;
+    // per encoded agent, the assumptions that it has arrived by a makespan keyed by the makespan
+    private ArrayList<HashMap<Integer, IVecInt>> arrivals;
+    // number of encoded agents that can be at every vertex, counted from 0, at every encoded time step
+    private ArrayList<int[]> occupancy;
+
+    // sat4j solvers and at-most-one encodings the portfolio combines, the i-th configuration uses the solver and
+    // encoding at i modulo their lengths so the first twenty configurations are all different
+    private static final String[] SOLVERS = {"Default", "Glucose21", "MiniLearningHeap", "BestWL", "MiniSATHeap"};
+    private static final AtMostOne[] ENCODINGS = {AtMostOne.SEQUENTIAL, AtMostOne.COMMANDER, AtMostOne.LADDER,
+            AtMostOne.PAIRWISE};
+    // threads running portfolio configurations, daemons so that they never keep the program alive
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "sat-portfolio");
+        t.setDaemon(true);
+        return t;
+    });
 
-    // simple constructor
-    public SATSolve(int bound, int gridLength, int agents) {
+    // simple constructor for an obstacle-free board of length gridLength
+    public SATSolve(int bound, int gridLength) {
+        this(bound, Grid.open(gridLength));
+    }
+
+    // solver for agents moving on a grid
+    public SATSolve(int bound, Grid grid) {
         this.bound = bound;
-        this.vertices = gridLength * gridLength;
-        this.agents = agents;
-        this.l = gridLength;
+        this.grid = grid;
+        this.vertices = grid.cells();
+        this.encoding = AtMostOne.SEQUENTIAL;
+        this.solverName = "Default";
+        this.metrics = Metrics.NONE;
+        this.deadline = Deadline.NONE;
+        this.search = MakespanSearch.INCREMENT;
+        this.step = 1;
+        reset();
     }
 
-    // mapping system that takes a triple and sends it to an integer, for a single agent, a higher number will
-    // represent a triple at a higher time step.
-    public int mapInt(int time, int vertex, int agent) {
-        if (time > bound || vertex > vertices || agent > agents) return -1;
-        return (agent - 1) * this.bound * this.vertices + (time - 1) * this.vertices + (vertex - 1) + 1;
+    // constructor for a single configuration of a portfolio
+    private SATSolve(int bound, Grid grid, String solverName, AtMostOne encoding) {
+        this(bound, grid);
+        this.encoding = encoding;
+        setSolver(solverName);
     }
 
-    // returns the triple based on an integer given the one-to-one mapping above
-    public Triple getTriple(int mappedInt) {
-        if (mappedInt == -1) return null;
-        int j = (mappedInt - 1) % this.vertices + 1;
-        int i = ((mappedInt - (j - 1)) % (this.bound * this.vertices)) / this.vertices + 1;
-        int k = (mappedInt - ((i - 1) * this.vertices + (j - 1))) / (this.bound * this.vertices) + 1;
-        return new Triple(i, j ,k);
+    // sets the sat4j solver configuration by its SolverFactory name, e.g. "Default" or "Glucose21", and forgets every
+    // encoded agent
+    public void setSolver(String solverName) {
+        this.solverName = solverName;
+        reset();
     }
 
-    // gets the corresponding vertex number based on coordinate
-    public int getVertexNumber(int x, int y, int l) {
-        return l * y + (x + 1);
+    // races up to threads differently configured solvers and encodings on every call and takes the first answer, a
+    // budget of one thread disables the portfolio
+    public void setPortfolio(int threads) {
+        if (threads <= 1) {
+            this.portfolio = null;
+            return;
+        }
+        this.portfolio = new SATSolve[threads];
+        for (int i = 0; i < threads; i++)
+            this.portfolio[i] = new SATSolve(this.bound, this.grid, SOLVERS[i % SOLVERS.length],
+                    ENCODINGS[i % ENCODINGS.length]);
+        setMetrics(this.metrics);
+        setDeadline(this.deadline);
+        setMakespanSearch(this.search, this.step);
     }
 
-    // gets the x-coordinate based on vertex number
-    public int getXC(int vnum, int l) {
-        return (vnum - 1 + l) % l;
+    // sets how the makespan of a group is searched and by how many time steps MakespanSearch.INCREMENT grows it, for
+    // every configuration of a portfolio as well. The time steps encoded so far are kept
+    public void setMakespanSearch(MakespanSearch search, int step) {
+        if (step < 1) throw new IllegalArgumentException("makespan step " + step + " is less than 1");
+        this.search = search;
+        this.step = step;
+        if (this.portfolio != null)
+            for (SATSolve config : this.portfolio) config.setMakespanSearch(search, step);
     }
 
-    // gets the y-cordinate based on vertex number
-    public int getYC(int vnum, int l) {
-        return ((vnum - ((vnum - 1 + l) % l)) / l);
+    // returns how the makespan of a group is searched
+    public MakespanSearch getMakespanSearch() {
+        return this.search;
     }
 
-    // performs the SAT solving given agents and collision avoidance (leave cat null if no independence detection)
-    public int solve(LinkedList<Integer> conflictIDs, HashMap<Integer, Agent> agents,
-                     HashMap<Integer, ArrayList<Cell>> cat) throws ContradictionException, TimeoutException {
-        // slightly arbitrary, may change later
-        final int MAXVAR = 1000000;
-        final int NBCLAUSES = 500000;
-        ISolver solver = SolverFactory.newDefault();
-        solver.newVar(MAXVAR);
-        solver.setExpectedNumberOfClauses(NBCLAUSES);
-
-        // Change LinkedList into an array for more convenient clause handling
-        int[] conflicts = new int[conflictIDs.size()];
-        for (int i = 0; i < conflictIDs.size(); i++) {
-            conflicts[i] = conflictIDs.get(i);
+    // sets where encoding times and sizes and solver times, conflicts and decisions are reported, the configurations of
+    // a portfolio report there as well
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        if (this.portfolio != null)
+            for (SATSolve config : this.portfolio) config.metrics = metrics;
+    }
+
+    // sets the time by which solve gives up with a TimeoutException, every configuration of a portfolio included. A
+    // deadline that passes while paths are being shortened still returns the paths found so far
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+        if (this.portfolio != null)
+            for (SATSolve config : this.portfolio) config.deadline = deadline;
+    }
+
+    // returns the solver and encoding of this configuration
+    public String getConfiguration() {
+        return this.solverName + "/" + this.encoding;
+    }
+
+    // returns the configuration that produced the answer of the last call to solve
+    public String getWinner() {
+        return this.winner;
+    }
+
+    // forgets every encoded agent and starts over with an empty solver
+    public void reset() {
+        if (this.portfolio != null)
+            for (SATSolve config : this.portfolio) config.reset();
+        // the solver is sized by prepare once the group is known
+        this.solver = SolverFactory.instance().createSolverByName(this.solverName);
+        this.vars = new ArrayList<>();
+        this.members = new ArrayList<>();
+        this.done = new ArrayList<>();
+        this.passing = new ArrayList<>();
+        this.fromStart = new ArrayList<>();
+        this.toGoal = new ArrayList<>();
+        this.horizon = 0;
+        this.occupancy = new ArrayList<>();
+        this.arrivals = new ArrayList<>();
+        this.nextVar = 1;
+        this.decisions = 0;
+        this.conflicts = 0;
+    }
+
+    // returns the number of agents encoded in the solver
+    public int size() {
+        return this.portfolio == null ? this.members.size() : this.portfolio[0].size();
+    }
+
+    // sets the encoding used for "at most one vertex per agent" and "at most one agent per vertex"
+    public void setEncoding(AtMostOne encoding) {
+        this.encoding = encoding;
+    }
+
+    // returns the encoding used for the at-most-one constraints
+    public AtMostOne getEncoding() {
+        return this.encoding;
+    }
+
+    // mapping system that takes a time, a vertex and the index of an agent inside of the conflict group and sends it
+    // to its variable, returns 0 if the agent cannot be at the vertex at that time. Variables are numbered densely
+    // so that, for a single agent, a higher number represents a higher time step.
+    public int mapInt(int time, int vertex, int k) {
+        if (time < 1 || time > this.horizon || vertex < 1 || vertex > this.vertices) return 0;
+        int[] layer = this.vars.get(k)[time];
+        if (layer == null) return 0;
+        int x = this.grid.x(vertex - 1) - layer[0];
+        int y = this.grid.y(vertex - 1) - layer[1];
+        if (x < 0 || y < 0 || x >= layer[2] || y >= layer[3]) return 0;
+        return layer[4 + y * layer[2] + x];
+    }
+
+    // adds an agent and numbers its variables for the time steps encoded so far. Returns false if the agent cannot
+    // reach its goal within the bound.
+    private boolean numberVariables(Agent a) {
+        // fewest moves from the start and to the goal, which are the earliest time an agent can be anywhere and the
+        // earliest it can arrive, cached per cell so every group the agent joins reuses them
+        int[] fromStart = HeuristicCache.shared().steps(this.grid, this.grid.vertex(a.getSI(), a.getSJ()));
+        int[] toGoal = HeuristicCache.shared().steps(this.grid, this.grid.vertex(a.getEI(), a.getEJ()));
+        if (fromStart[this.grid.vertex(a.getEI(), a.getEJ())] > this.bound - 1) return false;
+        this.vars.add(new int[this.bound + 1][]);
+        this.members.add(a);
+        this.fromStart.add(fromStart);
+        this.toGoal.add(toGoal);
+        this.done.add(new int[this.bound + 1]);
+        this.passing.add(new int[this.bound + 1]);
+        this.arrivals.add(new HashMap<>());
+        int k = this.members.size() - 1;
+        for (int t = 1; t <= this.horizon; t++) numberLayer(k, t);
+        return true;
+    }
+
+    // numbers the variables of an agent at a time step, it only gets a variable for a vertex if it can reach the
+    // vertex from its start by then and can still reach its goal from the vertex by the bound, so the variables of a
+    // time step do not depend on the horizon
+    private void numberLayer(int k, int t) {
+        int[] fromStart = this.fromStart.get(k);
+        int[] toGoal = this.toGoal.get(k);
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = -1, maxY = -1;
+        for (int v = 0; v < this.vertices; v++) {
+            if (fromStart[v] > t - 1 || toGoal[v] > this.bound - t) continue;
+            minX = Math.min(minX, this.grid.x(v));
+            minY = Math.min(minY, this.grid.y(v));
+            maxX = Math.max(maxX, this.grid.x(v));
+            maxY = Math.max(maxY, this.grid.y(v));
+        }
+        if (maxX == -1) return;
+        int w = maxX - minX + 1, h = maxY - minY + 1;
+        int[] layer = new int[4 + w * h];
+        layer[0] = minX;
+        layer[1] = minY;
+        layer[2] = w;
+        layer[3] = h;
+        // numbered in order of vertex so that the variables of a layer are dense
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                int v = this.grid.vertex(x, y);
+                if (fromStart[v] <= t - 1 && toGoal[v] <= this.bound - t)
+                    layer[4 + (y - minY) * w + (x - minX)] = this.nextVar++;
+            }
         }
+        this.vars.get(k)[t] = layer;
+        // an agent that stays at its goal has arrived and leaves the board, so the rest of the fleet may use its goal
+        Agent a = this.members.get(k);
+        if (mapInt(t, this.grid.vertex(a.getEI(), a.getEJ()) + 1, k) == 0) return;
+        this.done.get(k)[t] = this.nextVar++;
+        this.passing.get(k)[t] = this.nextVar++;
+    }
 
-        try {
-            // add all of the SAT-constraints, most taken from Surynek
-            // add starting positions and ending positions
-            for (int id : conflicts) {
-                Agent a = agents.get(id);
-                // set the start positions
-                solver.addClause(new VecInt(new int[]{mapInt(1, getVertexNumber(a.getSI(), a.getSJ(), this.l), id)}));
-                // set the end positions
-                solver.addClause(new VecInt(new int[]{mapInt(this.bound, getVertexNumber(a.getEI(), a.getEJ(), this.l), id)}));
+    // helper that collects the variables of an agent for a vertex and its neighbors at a time step
+    private int collectNeighbors(int[] lits, int count, int time, int vertex, int k) {
+        int x = mapInt(time, vertex, k);
+        if (x != 0) lits[count++] = x;
+        for (int n = this.grid.firstNeighbor(vertex - 1), end = this.grid.endNeighbor(vertex - 1); n < end; n++) {
+            x = mapInt(time, this.grid.neighbor(n) + 1, k);
+            if (x != 0) lits[count++] = x;
+        }
+        return count;
+    }
+
+    // counts what encoding the agents from index first onwards and the time steps from firstLayer onwards add and
+    // sizes the solver for it, the number of variables is exact and the number of clauses an upper bound
+    private void size(int first, int firstLayer) {
+        int n = this.members.size();
+        int aux = 0;
+        long clauses = this.horizon >= firstLayer ? n : n - first;
+        // only the new pairs of agent and time step are visited, and of those only the cells the agent can be at
+        for (int k = 0; k < n; k++) {
+            for (int t = k < first ? firstLayer : 1; t <= this.horizon; t++) {
+                int[] layer = this.vars.get(k)[t];
+                int reachable = 0;
+                for (int i = 4; layer != null && i < layer.length; i++)
+                    if (layer[i] != 0) reachable++;
+                aux += AtMostOne.variables(reachable, this.encoding);
+                clauses += 1 + AtMostOne.clauses(reachable, this.encoding) + 2L * reachable + 3;
+            }
+        }
+        // the new agents at a vertex exclude each other and every agent already encoded there, which the occupancy
+        // counts of the time step hold so that the agents encoded before are never visited again
+        int[] fresh = new int[this.vertices];
+        for (int t = first < n ? 1 : firstLayer; t <= this.horizon; t++) {
+            if (t > this.occupancy.size()) this.occupancy.add(new int[this.vertices]);
+            int[] old = this.occupancy.get(t - 1);
+            int from = t >= firstLayer ? 0 : first;
+            for (int k = from; k < n; k++) {
+                int[] layer = this.vars.get(k)[t];
+                for (int i = 4; layer != null && i < layer.length; i++)
+                    if (layer[i] != 0) fresh[cell(layer, i)]++;
+            }
+            for (int k = from; k < n; k++) {
+                int[] layer = this.vars.get(k)[t];
+                for (int i = 4; layer != null && i < layer.length; i++) {
+                    if (layer[i] == 0) continue;
+                    int v = cell(layer, i);
+                    if (fresh[v] == 0) continue;
+                    aux += AtMostOne.variables(fresh[v], this.encoding);
+                    clauses += AtMostOne.clauses(fresh[v], this.encoding) + (long) fresh[v] * old[v];
+                    old[v] += fresh[v];
+                    fresh[v] = 0;
+                }
             }
+        }
+        this.solver.newVar(this.nextVar - 1 + aux);
+        this.solver.setExpectedNumberOfClauses((int) Math.min(Integer.MAX_VALUE, this.solver.nConstraints() + clauses));
+    }
 
-            // at least one vertex occupied at every time step
-            for (int id : conflicts) {
-                for (int t = 1; t <= this.bound; t++) {
-                    int[] oneVertexAtLeast = new int[this.vertices];
-                    for (int v = 1; v <= vertices; v++) {
-                        oneVertexAtLeast[v - 1] = mapInt(t, v, id);
-                    }
-                    solver.addClause(new VecInt(oneVertexAtLeast));
+    // returns the vertex of the grid, counted from 0, at an index of a layer of variables
+    private int cell(int[] layer, int i) {
+        int box = i - 4;
+        return this.grid.vertex(layer[0] + box % layer[2], layer[1] + box / layer[2]);
+    }
+
+    // adds the constraints of the agents from index first onwards and of the time steps from firstLayer onwards to
+    // the solver, the constraints among earlier agents at earlier time steps are already encoded. Arriving at the goal
+    // is left to the assumptions so that later time steps can still be added
+    private void encode(int first, int firstLayer) throws ContradictionException {
+        int n = this.members.size();
+        // add all of the SAT-constraints, most taken from Surynek
+        // set the start positions
+        for (int k = 0; k < n && this.horizon >= 1; k++) {
+            if (k < first && firstLayer > 1) continue;
+            Agent a = this.members.get(k);
+            solver.addClause(new VecInt(new int[]{mapInt(1, this.grid.vertex(a.getSI(), a.getSJ()) + 1, k)}));
+        }
+
+        // at least one vertex and not more than one vertex occupied at every time step
+        int[] lits = new int[this.vertices];
+        for (int k = 0; k < n; k++) {
+            for (int t = 1; t <= this.horizon; t++) {
+                if (k < first && t < firstLayer) continue;
+                int count = 0;
+                for (int v = 1; v <= this.vertices; v++) {
+                    int x = mapInt(t, v, k);
+                    if (x != 0) lits[count++] = x;
                 }
+                int[] reachable = Arrays.copyOf(lits, count);
+                solver.addClause(new VecInt(reachable));
+                this.nextVar = AtMostOne.add(solver, reachable, this.nextVar, this.encoding);
             }
+        }
 
-            // not more than one vertex occupied at every time step
-            for (int id : conflicts) {
-                for (int t = 1; t <= this.bound; t++) {
-                    for (int i = 1; i < this.vertices; i++) {
-                        for (int j = i + 1; j <= this.vertices; j++) {
-                            solver.addClause(new VecInt(new int[]{-1 * mapInt(t, i, id), -1 * mapInt(t, j, id)}));
-                        }
-                    }
+        // at most one agent is placed in each vertex at each time step, the new agents are encoded among themselves
+        // and each new agent excludes every agent that was already encoded, at a new time step every agent is new
+        int[] agentLits = new int[n];
+        for (int t = first < n ? 1 : firstLayer; t <= this.horizon; t++) {
+            int old = t < firstLayer ? first : 0;
+            for (int v = 1; v <= this.vertices; v++) {
+                int count = 0;
+                for (int k = old; k < n; k++) {
+                    int x = mapInt(t, v, k);
+                    if (x != 0) agentLits[count++] = x;
+                }
+                if (count == 0) continue;
+                if (count > 1)
+                    this.nextVar = AtMostOne.add(solver, Arrays.copyOf(agentLits, count), this.nextVar, this.encoding);
+                for (int k = 0; k < old; k++) {
+                    int y = mapInt(t, v, k);
+                    if (y == 0) continue;
+                    for (int i = 0; i < count; i++)
+                        solver.addClause(new VecInt(new int[]{-agentLits[i], -y}));
                 }
             }
+        }
 
-            // at most one agent is placed in each vertex at each time step
-            for (int t = 1; t <= this.bound; t++) {
+        // an agent relocates to some of its neighbors or makes no move
+        int[] move = new int[10];
+        for (int k = 0; k < n; k++) {
+            for (int t = 1; t < this.horizon; t++) {
+                if (k < first && t + 1 < firstLayer) continue;
                 for (int v = 1; v <= this.vertices; v++) {
-                    for (int i = 0; i < conflicts.length - 1; i++) {
-                        for (int j = i + 1; j < conflicts.length; j++) {
-                            int[] x = new int[]{-1 * mapInt(t, v, conflicts[i]), -1 * mapInt(t, v, conflicts[j])};
-                            solver.addClause(new VecInt(x));
-                        }
+                    // where the agent can go next
+                    int x = mapInt(t, v, k);
+                    if (x != 0) {
+                        move[0] = -x;
+                        solver.addClause(new VecInt(Arrays.copyOf(move, collectNeighbors(move, 1, t + 1, v, k))));
+                    }
+                    // where the agent can come from
+                    x = mapInt(t + 1, v, k);
+                    if (x != 0) {
+                        move[0] = -x;
+                        solver.addClause(new VecInt(Arrays.copyOf(move, collectNeighbors(move, 1, t, v, k))));
                     }
                 }
             }
+        }
 
-            // an agent relocates to some of its neighbors or makes no move
-            for (int id : conflicts) {
-                for (int t = 1; t < this.bound; t++) {
-                    for (int vx = 0; vx < this.l; vx++) {
-                        for (int vy = 0; vy < this.l; vy++) {
-                            // top left corner
-                            if (vx == 0 && vy == 0) {
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy + 1, this.l), id)
-                                }));
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy + 1, this.l), id)
-                                }));
-                            }
-                            // top right corner
-                            else if (vx == this.l - 1 && vy == 0) {
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy + 1, this.l), id)
-                                }));
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy + 1, this.l), id)
-                                }));
-                            }
-                            // bottom left corner
-                            else if (vx == 0 && vy == this.l - 1) {
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy - 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy - 1, this.l), id),
-                                }));
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy - 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy - 1, this.l), id),
-                                }));
-                            }
-                            // bottom right corner
-                            else if (vx == this.l - 1 && vy == this.l - 1) {
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy - 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy - 1, this.l), id)
-                                }));
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy - 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy - 1, this.l), id)
-                                }));
-                            }
-                            // top edge
-                            else if (vy == 0) {
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy + 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy + 1, this.l), id)
-                                }));
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy + 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy + 1, this.l), id)
-                                }));
-                            }
-                            // bottom edge
-                            else if (vy == this.l - 1) {
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy - 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy - 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy - 1, this.l), id)
-                                }));
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy - 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy - 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy - 1, this.l), id)
-                                }));
-                            }
-                            // left edge
-                            else if (vx == 0) {
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy - 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy - 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy + 1, this.l), id)
-                                }));
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy - 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy - 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy + 1, this.l), id)
-                                }));
-                            }
-                            // right edge
-                            else if (vy == this.l - 1) {
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy + 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy + 1, this.l), id)
-                                }));
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy + 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy + 1, this.l), id)
-                                }));
-                            }
-                            // normal
-                            else {
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy - 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy - 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx - 1, vy + 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy - 1, this.l), id),
-                                        mapInt(t + 1, getVertexNumber(vx + 1, vy + 1, this.l), id)
-                                }));
-                                solver.addClause(new VecInt(new int[]{
-                                        -1 * mapInt(t + 1, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy - 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx, vy + 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy - 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx - 1, vy + 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy - 1, this.l), id),
-                                        mapInt(t, getVertexNumber(vx + 1, vy + 1, this.l), id)
-                                }));
-                            }
-                        }
-                    }
+        // an agent is done at a time step if it is at its goal then and at every later time step, otherwise being at
+        // its goal means it is only passing through
+        for (int k = 0; k < n; k++) {
+            Agent a = this.members.get(k);
+            int goal = this.grid.vertex(a.getEI(), a.getEJ()) + 1;
+            int[] d = this.done.get(k);
+            int[] p = this.passing.get(k);
+            for (int t = 1; t <= this.horizon; t++) {
+                if (d[t] == 0) continue;
+                if (k >= first || t >= firstLayer) {
+                    int x = mapInt(t, goal, k);
+                    solver.addClause(new VecInt(new int[]{-d[t], x}));
+                    solver.addClause(new VecInt(new int[]{-x, d[t], p[t]}));
                 }
+                if (t < this.horizon && (k >= first || t + 1 >= firstLayer))
+                    solver.addClause(new VecInt(new int[]{-d[t], d[t + 1]}));
             }
+        }
+    }
 
-            // if cat is provided add simple clauses that avoid collisions
-            if (cat != null) {
-                for (int i = 1; i <= this.agents; i++) {
-                    if (!conflictIDs.contains(i)) {
-                        ArrayList<Cell> p = cat.get(i);
-                        for (int t = 1; t <= p.size(); t++) {
-                            solver.addClause(new VecInt(new int[]{-1 * mapInt(t, getVertexNumber(p.get(t - 1).i, p.get(t - 1).j, this.l), i)}));
-                        }
-                    }
+    // encodes the time steps after the horizon up to a new one for every agent, the clauses of the earlier time steps
+    // and what the solver learned from them are kept
+    private void extend(int horizon) throws ContradictionException {
+        if (horizon <= this.horizon) return;
+        long start = this.metrics.start();
+        int firstLayer = this.horizon + 1;
+        int firstVar = this.nextVar;
+        int clauses = this.solver.nConstraints();
+        this.horizon = horizon;
+        try {
+            for (int k = 0; k < this.members.size(); k++)
+                for (int t = firstLayer; t <= horizon; t++) numberLayer(k, t);
+            size(this.members.size(), firstLayer);
+            encode(this.members.size(), firstLayer);
+            this.metrics.add(Metrics.Counter.SAT_VARIABLES, this.nextVar - firstVar);
+            this.metrics.add(Metrics.Counter.SAT_CLAUSES, this.solver.nConstraints() - clauses);
+        }
+        catch (ContradictionException e) {
+            reset();
+            throw e;
+        }
+        finally {
+            this.metrics.stop(Metrics.Phase.SAT_ENCODE, start);
+        }
+    }
+
+    // returns the largest number of time steps an encoded agent needs to reach its goal, no makespan can be shorter
+    private int lowerBound() {
+        int lower = 1;
+        for (int k = 0; k < this.members.size(); k++) {
+            Agent a = this.members.get(k);
+            lower = Math.max(lower, this.fromStart.get(k)[this.grid.vertex(a.getEI(), a.getEJ())] + 1);
+        }
+        return lower;
+    }
+
+    // blocks every cell that is reserved by an agent outside of the encoded group from a time step on, a cell at an
+    // agent's own goal is only blocked while the agent passes through it since an agent that has arrived leaves the
+    // board. Only the cells on the paths of the other agents are visited, so the work follows the reservations and the
+    // group rather than the size of the board
+    private void block(IVecInt assumptions, ReservationTable cat, int firstLayer) {
+        HashSet<Integer> group = new HashSet<>();
+        for (Agent a : this.members) group.add(a.getID());
+        ArrayList<PackedPath> others = new ArrayList<>();
+        for (int id : cat.agents())
+            if (!group.contains(id) && cat.get(id).size() >= firstLayer) others.add(cat.get(id));
+        int[] goals = new int[this.members.size()];
+        for (int k = 0; k < goals.length; k++) {
+            Agent a = this.members.get(k);
+            goals[k] = this.grid.vertex(a.getEI(), a.getEJ()) + 1;
+        }
+        int[] cells = new int[others.size()];
+        for (int t = firstLayer; t <= this.horizon && !others.isEmpty(); t++) {
+            // the reserved cells of the layer, each once even if several agents share it
+            int count = 0;
+            for (PackedPath p : others)
+                if (t - 1 < p.size()) cells[count++] = p.vertex(t - 1) + 1;
+            if (count == 0) break;
+            Arrays.sort(cells, 0, count);
+            for (int i = 0; i < count; i++) {
+                int v = cells[i];
+                if (i > 0 && v == cells[i - 1]) continue;
+                for (int k = 0; k < goals.length; k++) {
+                    int x = mapInt(t, v, k);
+                    if (x != 0) assumptions.push(v == goals[k] ? -this.passing.get(k)[t] : -x);
                 }
             }
         }
+    }
+
+    // makes sure that exactly the agents of the conflict group are encoded, agents that were encoded by an earlier
+    // call are kept and only the new ones are added. Returns false if the group cannot be solved within the bound.
+    private boolean prepare(int[] conflicts, HashMap<Integer, Agent> agents) throws ContradictionException {
+        // the encoded agents must all still be in the group, otherwise start over
+        HashMap<Integer, Agent> group = new HashMap<>();
+        for (int id : conflicts) group.put(id, agents.get(id));
+        for (Agent a : this.members) {
+            if (group.get(a.getID()) != a) {
+                reset();
+                break;
+            }
+        }
+        for (Agent a : this.members) group.remove(a.getID());
+
+        long start = this.metrics.start();
+        int first = this.members.size();
+        int firstVar = this.nextVar;
+        int clauses = this.solver.nConstraints();
+        try {
+            for (int id : conflicts) {
+                Agent a = group.get(id);
+                if (a != null && !numberVariables(a)) {
+                    reset();
+                    return false;
+                }
+            }
+            size(first, this.horizon + 1);
+            encode(first, this.horizon + 1);
+            this.metrics.add(Metrics.Counter.SAT_VARIABLES, this.nextVar - firstVar);
+            this.metrics.add(Metrics.Counter.SAT_CLAUSES, this.solver.nConstraints() - clauses);
+        }
+        catch (ContradictionException e) {
+            reset();
+            throw e;
+        }
+        finally {
+            this.metrics.stop(Metrics.Phase.SAT_ENCODE, start);
+        }
+        return true;
+    }
+
+    // encodes a conflict group from scratch up to the first makespan the search tries without solving it and returns
+    // the number of clauses, -1 if the group cannot be solved within the bound, so the encoding can be measured
+    // separately from the search
+    public int encode(LinkedList<Integer> conflictIDs, HashMap<Integer, Agent> agents) {
+        return encode(toArray(conflictIDs), agents);
+    }
+
+    // encodes a conflict group given by the IDs of its agents like above
+    public int encode(int[] conflicts, HashMap<Integer, Agent> agents) {
+        reset();
+        try {
+            if (!prepare(conflicts, agents)) return -1;
+            extend(this.search == MakespanSearch.FIXED ? this.bound : lowerBound());
+        }
         catch (ContradictionException e) {
             return -1;
         }
+        return this.solver.nConstraints();
+    }
 
-        // check to see if the problem is satisfiable
-        if (solver.isSatisfiable()) {
-            // go through conflicting agents and determine their paths, use bound reduction to get shorter paths
-            for (int i : conflicts) {
-                Agent a = agents.get(i);
-                // bound starts at original and then slowly decremented
-                int bound = this.bound;
-                // keep track of last constraints
-                IConstr lastFailure = null;
-                // while the problem is satisfiable, try to reduce the bound
-                // once a failure occurs revert the constraint
-                boolean needToRemove = true;
-                while (solver.isSatisfiable()) {
-                    bound--;
-                    try {
-                        lastFailure = solver.addClause(new VecInt(
-                                new int[]{mapInt(bound, getVertexNumber(a.getEI(), a.getEJ(), this.l), i)}));
-                    }
-                    catch (ContradictionException e) {
-                        needToRemove = false;
+    // copies the IDs of a conflict group into an array for more convenient clause handling
+    private static int[] toArray(LinkedList<Integer> conflictIDs) {
+        int[] conflicts = new int[conflictIDs.size()];
+        int i = 0;
+        for (int id : conflictIDs) conflicts[i++] = id;
+        return conflicts;
+    }
+
+    // turns a model of the solver into the truth value of every variable, the array is reused from one model to the
+    // next since every bound reduction step produces one
+    private boolean[] truth(int[] model) {
+        if (this.truth == null || this.truth.length < this.nextVar) this.truth = new boolean[this.nextVar];
+        else Arrays.fill(this.truth, false);
+        boolean[] truth = this.truth;
+        for (int lit : model)
+            if (lit > 0 && lit < truth.length) truth[lit] = true;
+        return truth;
+    }
+
+    // performs the SAT solving given agents and collision avoidance (leave cat null if no independence detection),
+    // calling this again with a larger group reuses the clauses and learned clauses of the agents encoded before
+    public int solve(LinkedList<Integer> conflictIDs, HashMap<Integer, Agent> agents,
+                     ReservationTable cat) throws ContradictionException, TimeoutException {
+        return solve(toArray(conflictIDs), agents, cat);
+    }
+
+    // performs the SAT solving like above for a conflict group given by the IDs of its agents
+    public int solve(int[] conflicts, HashMap<Integer, Agent> agents,
+                     ReservationTable cat) throws ContradictionException, TimeoutException {
+        HashMap<Integer, PackedPath> paths;
+        if (this.portfolio == null) {
+            paths = plan(conflicts, agents, cat);
+            this.winner = getConfiguration();
+        }
+        else {
+            paths = race(conflicts, agents, cat);
+        }
+        if (paths == null) return -1;
+
+        // set paths and keep track of makespan for the group
+        int mpl = -1;
+        for (int id : conflicts) {
+            Agent a = agents.get(id);
+            a.setPath(paths.get(id));
+            a.setIncorrect();
+            // update cat
+            if (cat != null) {
+                cat.put(id, a.getPath());
+            }
+            // update makespan
+            mpl = Math.max(mpl, a.getPathLength());
+        }
+        return mpl;
+    }
+
+    // solves the conflict group without changing the agents or the collision avoidance table, returns the path of
+    // every agent in the group or null if there is no solution within the bound
+    private HashMap<Integer, PackedPath> plan(int[] conflicts, HashMap<Integer, Agent> agents,
+                                              ReservationTable cat) throws TimeoutException {
+        // the reservations of the rest of the fleet, the makespan and the bound reduction are assumptions so nothing
+        // is added to or removed from the solver
+        IVecInt assumptions = new VecInt();
+        int makespan;
+        try {
+            if (!prepare(conflicts, agents)) return null;
+            this.blocked = new VecInt();
+            if (cat != null) block(this.blocked, cat, 1);
+            makespan = search(assumptions, cat);
+        }
+        catch (ContradictionException e) {
+            return null;
+        }
+        if (makespan == -1) return null;
+        boolean[] model = this.truth;
+
+        // go through conflicting agents and determine their paths, use bound reduction to get shorter paths
+        try {
+            for (int k = 0; k < this.members.size(); k++) {
+                // bound starts at original and then slowly decremented, once a failure occurs drop the assumption.
+                // The agent must have arrived by the bound, being at its goal then would still let it leave again
+                for (int bound = makespan - 1; bound >= 1; bound--) {
+                    int d = this.done.get(k)[bound];
+                    // the goal cannot be reached any earlier
+                    if (d == 0) break;
+                    assumptions.push(d);
+                    if (!isSatisfiable(assumptions)) {
+                        assumptions.pop();
                         break;
                     }
+                    model = truth(solver.model());
                 }
-                if (needToRemove) solver.removeConstr(lastFailure);
             }
+        }
+        catch (TimeoutException e) {
+            // out of time while shortening paths, the last model is still a valid plan
+            if (this.stopped) throw e;
+        }
 
+        // loop through all the paths for final clean-up
+        HashMap<Integer, PackedPath> paths = new HashMap<>();
+        for (int k = 0; k < this.members.size(); k++) {
+            Agent a = this.members.get(k);
+            int[] path = new int[makespan];
+            path[0] = this.grid.vertex(a.getSI(), a.getSJ());
+            for (int t = 2; t <= makespan; t++)
+                path[t - 1] = next(model, t, path[t - 2], k);
 
-            // loop through all the paths for final clean-up
-            // keep track of makespan for the group
-            int mpl = -1;
-            if (solver.isSatisfiable()) {
-                for (int i : conflicts) {
-                    ArrayList<Cell> path = new ArrayList<>();
-                    for (int k = (i - 1) * this.bound * this.vertices + 1; k <= i * this.bound * this.vertices; k++) {
-                        if (solver.model(k)) {
-                            Triple t = getTriple(k);
-                            path.add(new Cell(getXC(t.getJ(), this.l), getYC(t.getJ(), this.l)));
-                        }
-                    }
+            // trim the waits at the goal
+            int length = makespan;
+            while (length > 1 && path[length - 1] == path[length - 2]) length--;
+            paths.put(a.getID(), new PackedPath(this.grid, path, length));
+        }
+        return paths;
+    }
+
+    // finds the makespan the group is planned with, leaving the model of its plan in truth and the assumptions of
+    // that makespan in assumptions. Returns -1 if the group cannot arrive within the bound
+    private int search(IVecInt assumptions, ReservationTable cat) throws TimeoutException, ContradictionException {
+        int makespan = this.search == MakespanSearch.FIXED ? this.bound : Math.min(this.bound, lowerBound());
+        int failed = makespan - 1;
+        int gap = this.search == MakespanSearch.INCREMENT ? this.step : 1;
+        while (!reaches(makespan, assumptions, cat)) {
+            if (makespan == this.bound) return -1;
+            failed = makespan;
+            makespan = Math.min(this.bound, makespan + gap);
+            if (this.search == MakespanSearch.EXPONENTIAL) gap *= 2;
+        }
+        truth(solver.model());
 
-                    // trim paths
-                    for (int j = this.bound - 1; j > 0; j--) {
-                        if (path.get(j).toString().equals(path.get(j - 1).toString()))
-                            path.remove(j);
-                        else {
-                            break;
-                        }
+        // the time steps up to the makespan that worked are encoded, so narrowing it down only changes assumptions
+        if (this.search == MakespanSearch.EXPONENTIAL) {
+            try {
+                while (makespan - failed > 1) {
+                    int mid = (failed + makespan) >>> 1;
+                    if (reaches(mid, assumptions, cat)) {
+                        makespan = mid;
+                        truth(solver.model());
                     }
-                    // set paths
-                    Agent a = agents.get(i);
-                    a.setPath(path);
-                    a.setIncorrect();
-                    // update cat
-                    if (cat != null) {
-                        cat.remove(i);
-                        cat.put(i, a.getPath());
+                    else {
+                        failed = mid;
                     }
-                    // update makespan
-                    mpl = Math.max(mpl, path.size());
                 }
             }
-            return mpl;
+            catch (TimeoutException e) {
+                // out of time while narrowing down, the last model is still a valid plan
+                if (this.stopped) throw e;
+            }
         }
-        else {
-            return -1;
+        assume(assumptions, makespan);
+        return makespan;
+    }
+
+    // checks if the group can arrive within a makespan, encoding the time steps up to it first
+    private boolean reaches(int makespan, IVecInt assumptions, ReservationTable cat)
+            throws TimeoutException, ContradictionException {
+        int encoded = this.horizon;
+        extend(makespan);
+        if (cat != null) block(this.blocked, cat, encoded + 1);
+        return assume(assumptions, makespan) && isSatisfiable(assumptions);
+    }
+
+    // sets the assumptions to the reservations of the rest of the fleet and every agent having arrived by a makespan,
+    // an agent also cannot be at a vertex it could not reach its goal from by then. Returns false if some agent cannot
+    // be at its goal by then
+    private boolean assume(IVecInt assumptions, int makespan) {
+        assumptions.clear();
+        this.blocked.copyTo(assumptions);
+        for (int k = 0; k < this.members.size(); k++) {
+            if (this.done.get(k)[makespan] == 0) return false;
+            int agent = k;
+            this.arrivals.get(k).computeIfAbsent(makespan, m -> arrival(agent, m)).copyTo(assumptions);
         }
+        return true;
     }
-}
 
+    // returns the assumptions that an agent has arrived by a makespan and is at no cell it could not reach its goal
+    // from by then, they depend on neither the reservations nor the horizon and are kept until the solver is reset
+    private IVecInt arrival(int k, int makespan) {
+        IVecInt lits = new VecInt();
+        lits.push(this.done.get(k)[makespan]);
+        if (makespan == this.bound) return lits;
+        int[] toGoal = this.toGoal.get(k);
+        for (int t = 1; t < makespan; t++) {
+            int[] layer = this.vars.get(k)[t];
+            for (int i = 4; layer != null && i < layer.length; i++)
+                if (layer[i] != 0 && toGoal[cell(layer, i)] > makespan - t) lits.push(-layer[i]);
+        }
+        return lits;
+    }
+
+    // returns the vertex of the grid an agent is at in a model at a time step given the vertex it was at the time step
+    // before, only that vertex and its neighbors can be true
+    private int next(boolean[] model, int time, int from, int k) {
+        int x = mapInt(time, from + 1, k);
+        if (x != 0 && model[x]) return from;
+        for (int n = this.grid.firstNeighbor(from), end = this.grid.endNeighbor(from); n < end; n++) {
+            x = mapInt(time, this.grid.neighbor(n) + 1, k);
+            if (x != 0 && model[x]) return this.grid.neighbor(n);
+        }
+        throw new IllegalStateException("agent " + this.members.get(k).getID() + " has no move at time " + time);
+    }
+
+    // helper that runs the solver unless a portfolio race has already been decided
+    private boolean isSatisfiable(IVecInt assumptions) throws TimeoutException {
+        if (this.stopped) throw new TimeoutException("another configuration finished first");
+        if (this.deadline.isExpired()) throw new TimeoutException("deadline passed");
+        if (this.deadline.isBounded()) solver.setTimeoutMs(Math.max(1, this.deadline.remainingMillis()));
+        else solver.setTimeout(Integer.MAX_VALUE);
+        long start = this.metrics.start();
+        try {
+            return solver.isSatisfiable(assumptions);
+        }
+        finally {
+            this.metrics.stop(Metrics.Phase.SAT_SEARCH, start);
+            if (this.metrics.enabled()) report();
+        }
+    }
+
+    // reports the decisions and conflicts of the solver since the last report, sat4j counts them over the lifetime
+    // of the solver
+    private void report() {
+        Map<String, Number> stats = this.solver.getStat();
+        long d = stats.getOrDefault("decisions", 0).longValue();
+        long c = stats.getOrDefault("conflicts", 0).longValue();
+        this.metrics.add(Metrics.Counter.SAT_DECISIONS, d >= this.decisions ? d - this.decisions : d);
+        this.metrics.add(Metrics.Counter.SAT_CONFLICTS, c >= this.conflicts ? c - this.conflicts : c);
+        this.decisions = d;
+        this.conflicts = c;
+    }
+
+    // runs every configuration of the portfolio on the group in parallel and returns the paths of the first one to
+    // finish, the others are stopped and waited for so that they can be reused by the next call
+    private HashMap<Integer, PackedPath> race(int[] conflicts, HashMap<Integer, Agent> agents,
+                                                  ReservationTable cat) throws TimeoutException {
+        CompletionService<SATSolve> race = new ExecutorCompletionService<>(POOL);
+        ArrayList<Future<SATSolve>> entries = new ArrayList<>();
+        for (SATSolve config : this.portfolio) {
+            config.stopped = false;
+            entries.add(race.submit(() -> {
+                config.result = config.plan(conflicts, agents, cat);
+                return config;
+            }));
+        }
+
+        SATSolve first = null;
+        // the interrupt is restored once every configuration has stopped, with the flag set waiting for them would
+        // return at once and spin
+        boolean interrupted = false;
+        try {
+            for (int i = 0; i < entries.size() && first == null; i++) {
+                try {
+                    first = race.take().get();
+                }
+                catch (ExecutionException e) {
+                    // this configuration failed, keep waiting for the others
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            interrupted = true;
+        }
+        finally {
+            for (int i = 0; i < entries.size(); i++) {
+                SATSolve config = this.portfolio[i];
+                config.stopped = true;
+                while (!entries.get(i).isDone()) {
+                    config.solver.expireTimeout();
+                    try {
+                        entries.get(i).get(10, TimeUnit.MILLISECONDS);
+                    }
+                    catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                    catch (ExecutionException | java.util.concurrent.TimeoutException e) {
+                        // still running or stopped, check again
+                    }
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        if (first == null) throw new TimeoutException("no configuration of the portfolio finished");
+        this.winner = first.getConfiguration();
+        return first.result;
+    }
+}
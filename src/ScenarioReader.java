@@ -0,0 +1,118 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the entries of a MovingAI scenario file one line at a time, so only the agents that are actually used are
+ * ever parsed. Files of at least MAPPED bytes are memory-mapped and scanned in place, smaller ones are read through a
+ * buffered reader.
+ */
+
+public class ScenarioReader implements Iterator<MovingAI.Entry>, AutoCloseable {
+
+    // files at least this large are memory-mapped
+    public static final long MAPPED = 1 << 20;
+
+    // file being read
+    private Path file;
+    // reader of a small file, null if the file is mapped
+    private BufferedReader reader;
+    // contents of a large file, null if the file is read through reader
+    private MappedByteBuffer buffer;
+    // bytes of the current line of a mapped file
+    private byte[] line;
+    // next entry, null if it has not been read yet
+    private MovingAI.Entry next;
+    // number of lines read so far
+    private int lineNumber;
+
+    // opens a scenario file and skips its version line
+    public ScenarioReader(Path file) throws IOException {
+        this.file = file;
+        long size = Files.size(file);
+        if (size >= MAPPED) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            this.line = new byte[256];
+        }
+        else {
+            this.reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1);
+        }
+        String first = readLine();
+        if (first != null && !first.startsWith("version")) this.next = parse(first);
+    }
+
+    // reads the next line, null at the end of the file
+    private String readLine() throws IOException {
+        this.lineNumber++;
+        if (this.reader != null) return this.reader.readLine();
+        if (!this.buffer.hasRemaining()) return null;
+        int n = 0;
+        while (this.buffer.hasRemaining()) {
+            byte b = this.buffer.get();
+            if (b == '\n') break;
+            if (n == this.line.length) this.line = Arrays.copyOf(this.line, 2 * n);
+            this.line[n++] = b;
+        }
+        if (n > 0 && this.line[n - 1] == '\r') n--;
+        return new String(this.line, 0, n, StandardCharsets.ISO_8859_1);
+    }
+
+    // parses a line of the form: bucket map width height start_x start_y goal_x goal_y optimal_length
+    private MovingAI.Entry parse(String text) throws IOException {
+        String[] field = text.split("\t");
+        if (field.length < 9) field = text.trim().split("\\s+");
+        if (field.length < 9)
+            throw new IOException(this.file + ":" + this.lineNumber + ": expected 9 fields but got " + field.length);
+        try {
+            return new MovingAI.Entry(Integer.parseInt(field[0]), field[1], Integer.parseInt(field[2]),
+                    Integer.parseInt(field[3]), Integer.parseInt(field[4]), Integer.parseInt(field[5]),
+                    Integer.parseInt(field[6]), Integer.parseInt(field[7]), Double.parseDouble(field[8]));
+        }
+        catch (NumberFormatException e) {
+            throw new IOException(this.file + ":" + this.lineNumber + ": " + e.getMessage());
+        }
+    }
+
+    // checks if there is another entry, skipping blank lines
+    @Override
+    public boolean hasNext() {
+        try {
+            while (this.next == null) {
+                String text = readLine();
+                if (text == null) return false;
+                if (!text.trim().isEmpty()) this.next = parse(text);
+            }
+            return true;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // returns the next entry
+    @Override
+    public MovingAI.Entry next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        MovingAI.Entry e = this.next;
+        this.next = null;
+        return e;
+    }
+
+    // closes the reader of a small file, a mapped file is released once the buffer is no longer referenced
+    @Override
+    public void close() throws IOException {
+        if (this.reader != null) this.reader.close();
+        this.buffer = null;
+    }
+}
@@ -0,0 +1,213 @@
+import java.util.Arrays;
+
+/**
+ * Reusable scratch space for A* searches over primitive arrays indexed by node id. Every thread owns one context that
+ * grows to the largest search it has run. Node data is only valid when its stamp matches the current generation, so
+ * starting a new search is a counter increment instead of clearing or reallocating the arrays.
+ *
+ * Searches over graphs too large to index densely, such as the time-expanded grid of a space-time search, look their
+ * nodes up by a long key instead. A key gets the next free slot of the arrays the first time it is reached, found
+ * again through an open-addressed hash table, so the memory of a search grows with the nodes it reaches rather than
+ * with the size of the graph.
+ */
+
+public class SearchContext {
+
+    // one context per thread so concurrent searches never share state
+    private static final ThreadLocal<SearchContext> CONTEXT = ThreadLocal.withInitial(SearchContext::new);
+
+    // current search generation
+    private int generation;
+    // generation in which a node was last reached
+    private int[] seen;
+    // generation in which a node was last expanded
+    private int[] closed;
+    // cost from the source to a node
+    private int[] g;
+    // node a node was reached from, -1 for the source
+    private int[] parent;
+    // number of steps from the source to a node, the source has distance 1
+    private int[] distance;
+    // open list
+    private IndexedHeap open;
+    // key of the node in every slot of a keyed search
+    private long[] keys;
+    // number of slots handed out in the current keyed search
+    private int slots;
+    // open-addressed table from node key to slot, an entry belongs to the current search if its stamp matches, the
+    // length is zero or a power of two
+    private long[] tableKey;
+    private int[] tableSlot;
+    private int[] tableStamp;
+    // table length - 1, the bits of a hash used as index
+    private int mask;
+    // key the last find missed and the free table entry it ended at, so adding the key right after needs no probing
+    private long missKey;
+    private int missEntry;
+
+    // most slots a keyed search may hand out
+    private static final int MAX_SLOTS = 1 << 30;
+
+    // simple constructor
+    private SearchContext() {
+        this.generation = 0;
+        this.seen = new int[0];
+        this.closed = new int[0];
+        this.g = new int[0];
+        this.parent = new int[0];
+        this.distance = new int[0];
+        this.open = new IndexedHeap(0);
+        this.keys = new long[0];
+        this.tableKey = new long[0];
+        this.tableSlot = new int[0];
+        this.tableStamp = new int[0];
+    }
+
+    // returns the context of the calling thread, able to hold nodes with ids less than nodes
+    public static SearchContext get(int nodes) {
+        SearchContext ctx = CONTEXT.get();
+        ctx.ensureCapacity(nodes);
+        return ctx;
+    }
+
+    // returns the context of the calling thread for a search whose nodes are looked up by key with find and add, the
+    // arrays grow with the nodes the search reaches
+    public static SearchContext keyed() {
+        return CONTEXT.get();
+    }
+
+    // grows the arrays so that node ids up to nodes - 1 can be used
+    private void ensureCapacity(int nodes) {
+        if (nodes <= this.seen.length) return;
+        int size = Math.max(nodes, this.seen.length * 2);
+        this.seen = Arrays.copyOf(this.seen, size);
+        this.closed = Arrays.copyOf(this.closed, size);
+        this.g = Arrays.copyOf(this.g, size);
+        this.parent = Arrays.copyOf(this.parent, size);
+        this.distance = Arrays.copyOf(this.distance, size);
+        this.open.ensureCapacity(size);
+    }
+
+    // starts a new search, invalidating every node of the previous one
+    public void begin() {
+        this.open.clear();
+        this.slots = 0;
+        this.generation++;
+        if (this.generation == 0) {
+            // stamps wrapped around, the only time the arrays are actually cleared
+            Arrays.fill(this.seen, 0);
+            Arrays.fill(this.closed, 0);
+            Arrays.fill(this.tableStamp, 0);
+            this.generation = 1;
+        }
+    }
+
+    // returns the slot of a node key in the current search, -1 if the node has not been added
+    public int find(long key) {
+        if (this.tableKey.length == 0) return -1;
+        int mask = this.mask;
+        int i = hash(key) & mask;
+        for (; this.tableStamp[i] == this.generation; i = (i + 1) & mask)
+            if (this.tableKey[i] == key) return this.tableSlot[i];
+        this.missKey = key;
+        this.missEntry = i;
+        return -1;
+    }
+
+    // gives a node key that has not been added yet the next free slot and returns it, the node is neither seen nor
+    // closed until it is pushed or closed
+    public int add(long key) {
+        if (this.slots == MAX_SLOTS)
+            throw new IllegalStateException("search reached more than " + MAX_SLOTS + " nodes");
+        boolean grown = 2L * (this.slots + 1) > this.tableKey.length;
+        if (grown) rehash(Math.max(1024, 2 * this.tableKey.length));
+        int slot = this.slots++;
+        ensureCapacity(this.slots);
+        if (slot >= this.keys.length) this.keys = Arrays.copyOf(this.keys, this.seen.length);
+        this.keys[slot] = key;
+        int i = this.missEntry;
+        if (!grown && this.missKey == key && this.tableStamp[i] != this.generation) {
+            this.tableKey[i] = key;
+            this.tableSlot[i] = slot;
+            this.tableStamp[i] = this.generation;
+        }
+        else {
+            insert(key, slot);
+        }
+        return slot;
+    }
+
+    // returns the key of the node in a slot of a keyed search
+    public long key(int slot) {
+        return this.keys[slot];
+    }
+
+    // puts a key and its slot into the table, the key must not be in it yet
+    private void insert(long key, int slot) {
+        int mask = this.mask;
+        int i = hash(key) & mask;
+        while (this.tableStamp[i] == this.generation) i = (i + 1) & mask;
+        this.tableKey[i] = key;
+        this.tableSlot[i] = slot;
+        this.tableStamp[i] = this.generation;
+    }
+
+    // replaces the table by an empty one of a new capacity and puts the slots of the current search back in
+    private void rehash(int capacity) {
+        this.tableKey = new long[capacity];
+        this.tableSlot = new int[capacity];
+        this.tableStamp = new int[capacity];
+        this.mask = capacity - 1;
+        for (int slot = 0; slot < this.slots; slot++) insert(this.keys[slot], slot);
+    }
+
+    // spreads the bits of a key over the low bits used as table index
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // returns if a node has been reached in the current search
+    public boolean isSeen(int node) {
+        return this.seen[node] == this.generation;
+    }
+
+    // returns if a node has been expanded in the current search
+    public boolean isClosed(int node) {
+        return this.closed[node] == this.generation;
+    }
+
+    // marks a node as expanded
+    public void close(int node) {
+        this.closed[node] = this.generation;
+    }
+
+    // returns the cost from the source to a node
+    public int g(int node) {
+        return this.g[node];
+    }
+
+    // returns the node a node was reached from
+    public int parent(int node) {
+        return this.parent[node];
+    }
+
+    // returns the number of steps from the source to a node
+    public int distance(int node) {
+        return this.distance[node];
+    }
+
+    // records a (better) way of reaching a node and places it on the open list with the given priority
+    public void push(int node, int g, long priority, int parent, int distance) {
+        this.seen[node] = this.generation;
+        this.g[node] = g;
+        this.parent[node] = parent;
+        this.distance[node] = distance;
+        this.open.push(node, priority);
+    }
+
+    // removes and returns the open node with the smallest priority, -1 if there is none
+    public int poll() {
+        return this.open.poll();
+    }
+}
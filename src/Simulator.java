@@ -1,154 +1,184 @@
-import org.sat4j.specs.ContradictionException;
-import org.sat4j.specs.TimeoutException;
-
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Created by Eric He on 5/3/17.
  *
- * Runs multiple simulations of Games to determine statistics needed for data analysis
+ * Runs multiple simulations of Games to determine statistics needed for data analysis. Trials run concurrently, each
+ * drawing its instance from its own seeded random number generator, so a run is reproduced by passing the seed it
+ * printed: java Simulator [seed] [threads] [metrics file], where 0 threads runs the trials on virtual threads if
+ * available. The metrics of every ID + SAT run are written to the metrics file if one is given, as CSV if it ends with
+ * .csv and as JSON lines otherwise.
  */
 public class Simulator {
 
-    public static void main(String[] args) throws TimeoutException, ContradictionException {
-        // SAT vs SAT + ID time, 0.25 Density for 2x2, 4x4, 6x6, 8x8, 30 iterations
-        System.out.println();
-        System.out.println("**********Test 1 Begins**********");
-        System.out.println();
+    // number of iterations per configuration
+    private static final int ITERATIONS = 30;
+
+    // outcome of a single trial
+    private static class Result {
+        // if ID + SAT solved the instance and how long it took
+        boolean idSolved;
+        long idTime;
+        // if SAT alone solved the instance and how long it took
+        boolean satSolved;
+        long satTime;
+        // largest replan size and number of replans of ID + SAT
+        int maxReplan;
+        int replans;
+        // metrics of the ID + SAT run, null if they are not recorded
+        RunMetrics metrics;
+    }
+
+    // index of the next trial, every trial of the simulation gets a different seed
+    private static int nextTrial = 0;
+    // metrics of every ID + SAT run in trial order, null if they are not recorded
+    private static List<RunMetrics> runs = null;
+
+    // creates a game with random agents, an agent is redrawn until it can be added
+    private static Game randomGame(int l, int robots, Random rng, HashMap<Integer, Agent> ags) {
+        Game g = new Game(l, 2 * l);
+        for (int a = 1; a <= robots; a++) {
+            Agent jamesBond = new Agent(a, l, rng);
+            while (!g.add(jamesBond)) {
+                jamesBond = new Agent(a, l, rng);
+            }
+            ags.put(a, jamesBond);
+        }
+        return g;
+    }
+
+    // gives a game new metrics if they are recorded
+    private static RunMetrics record(Game g, String label) {
+        if (runs == null) return null;
+        RunMetrics m = new RunMetrics(label);
+        g.setMetrics(m);
+        return m;
+    }
+
+    // runs the trials of one configuration
+    private static List<Result> trials(TrialRunner runner, TrialRunner.Trial<Result> trial) throws Exception {
+        List<Result> results = runner.run(nextTrial, ITERATIONS, trial);
+        nextTrial += ITERATIONS;
+        if (runs != null)
+            for (Result r : results) runs.add(r.metrics);
+        return results;
+    }
+
+    // SAT vs SAT + ID time for 2x2, 4x4, 6x6, 8x8
+    private static void compare(TrialRunner runner, int test) throws Exception {
         for (int i = 2; i <= 8; i += 2) {
+            final int l = i;
             int robots = (i * i) / 4;
-            SATSolve sat = new SATSolve(2 * i, i, robots);
-            long IDtot = 0;
-            long SATtot = 0;
-            int xCount = 0;
-            int yCount = 0;
-            for (int iter = 1; iter <= 30; iter++) {
-                LinkedList<Integer> conflictIDs = new LinkedList<>();
+            List<Result> results = trials(runner, (index, rng) -> {
+                Result r = new Result();
                 HashMap<Integer, Agent> ags = new HashMap<>();
-                Game g = new Game(i, 2 * i);
-                for (int a = 1; a <= robots; a++) {
-                    Agent jamesBond = new Agent(a, i);
-                    while (!g.add(jamesBond)) {
-                        jamesBond = new Agent(a, i);
-                    }
-                    conflictIDs.add(a);
-                    ags.put(a, jamesBond);
-                }
+                LinkedList<Integer> conflictIDs = new LinkedList<>();
+                Game g = randomGame(l, robots, rng, ags);
+                r.metrics = record(g, "test" + test + "/" + l + "x" + l + "/" + index);
+                for (int a = 1; a <= robots; a++) conflictIDs.add(a);
                 // add timer here
                 long startTime1 = System.currentTimeMillis();
-                boolean x = g.run();
+                r.idSolved = g.run();
                 long endTime1 = System.currentTimeMillis();
-                if (x) {
-                    IDtot += (endTime1 - startTime1);
-                    xCount++;
-                }
+                r.idTime = endTime1 - startTime1;
                 // add timer here
+                SATSolve sat = new SATSolve(2 * l, l);
                 long startTime2 = System.currentTimeMillis();
-                int y = sat.solve(conflictIDs, ags, null);
+                r.satSolved = sat.solve(conflictIDs, ags, null) != -1;
                 long endTime2 = System.currentTimeMillis();
-                if (y != -1) {
-                    SATtot += (endTime2 - endTime1);
-                    yCount++;
-                }
+                r.satTime = endTime2 - startTime2;
+                return r;
+            });
 
-            }
-            System.out.println("Test 1: Complete for " + i + "x" + i + " grid");
-            System.out.println("Success rate for ID + SAT: " + xCount + "/30");
-            System.out.println("Avg ID + SAT time: " + ((double) IDtot) / xCount);
-            System.out.println("Success rate for SAT: " + yCount + "/30");
-            System.out.println("Avg SAT time: " + ((double) SATtot) / yCount);
-            System.out.println();
-        }
-        System.out.println("Test 1 Completed");
-
-        // SAT vs SAT + ID time, 0.5 Density for 2x2, 4x4, 6x6, 8x8, 30 iterations
-        System.out.println();
-        System.out.println();
-        System.out.println("**********Test 2 Begins**********");
-        System.out.println();
-        for (int i = 2; i <= 8; i += 2) {
-            int robots = (i * i) / 4;
-            SATSolve sat = new SATSolve(2 * i, i, robots);
+            // merge the results in trial order
             long IDtot = 0;
             long SATtot = 0;
             int xCount = 0;
             int yCount = 0;
-            for (int iter = 1; iter <= 30; iter++) {
-                LinkedList<Integer> conflictIDs = new LinkedList<>();
-                HashMap<Integer, Agent> ags = new HashMap<>();
-                Game g = new Game(i, 2 * i);
-                for (int a = 1; a <= robots; a++) {
-                    Agent jamesBond = new Agent(a, i);
-                    while (!g.add(jamesBond)) {
-                        jamesBond = new Agent(a, i);
-                    }
-                    conflictIDs.add(a);
-                    ags.put(a, jamesBond);
-                }
-                // add timer here
-                long startTime1 = System.currentTimeMillis();
-                boolean x = g.run();
-                long endTime1 = System.currentTimeMillis();
-                if (x) {
-                    IDtot += (endTime1 - startTime1);
+            for (Result r : results) {
+                if (r.idSolved) {
+                    IDtot += r.idTime;
                     xCount++;
                 }
-                // add timer here
-                long startTime2 = System.currentTimeMillis();
-                int y = sat.solve(conflictIDs, ags, null);
-                long endTime2 = System.currentTimeMillis();
-                if (y != -1) {
-                    SATtot += (endTime2 - endTime1);
+                if (r.satSolved) {
+                    SATtot += r.satTime;
                     yCount++;
                 }
-
             }
-            System.out.println("Test 2: Complete for " + i + "x" + i + " grid");
-            System.out.println("Success rate for ID + SAT: " + xCount + "/30");
+            System.out.println("Test " + test + ": Complete for " + i + "x" + i + " grid");
+            System.out.println("Success rate for ID + SAT: " + xCount + "/" + ITERATIONS);
             System.out.println("Avg ID + SAT time: " + ((double) IDtot) / xCount);
-            System.out.println("Success rate for SAT: " + yCount + "/30");
+            System.out.println("Success rate for SAT: " + yCount + "/" + ITERATIONS);
             System.out.println("Avg SAT time: " + ((double) SATtot) / yCount);
             System.out.println();
         }
-        System.out.println("Test 2 Completed");
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime();
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String metricsFile = args.length > 2 ? args[2] : null;
+        if (metricsFile != null) runs = new ArrayList<>();
+        System.out.println("Seed: " + seed);
+
+        try (TrialRunner runner = new TrialRunner(seed, threads)) {
+            // SAT vs SAT + ID time, 0.25 Density for 2x2, 4x4, 6x6, 8x8, 30 iterations
+            System.out.println();
+            System.out.println("**********Test 1 Begins**********");
+            System.out.println();
+            compare(runner, 1);
+            System.out.println("Test 1 Completed");
+
+            // SAT vs SAT + ID time, 0.5 Density for 2x2, 4x4, 6x6, 8x8, 30 iterations
+            System.out.println();
+            System.out.println();
+            System.out.println("**********Test 2 Begins**********");
+            System.out.println();
+            compare(runner, 2);
+            System.out.println("Test 2 Completed");
 
-        System.out.println();
-        System.out.println("**********Test 3 Begins**********");
-        System.out.println();
-        // largest replan size/ total agents + num replans
-        // for densities about 0.2, 0.5, 0.8 for grids 4x4, 5x5, 6x6, 7x7, 30 iterations
-        for (int i = 4; i <= 7; i++) {
-            for (double d = 0.2; d <= 0.8; d += 0.3) {
-                int IDtot = 0;
-                int ReplansTot = 0;
-                int xCount = 0;
-                int robots = (int) (i * i * d);
-                for (int iter = 1; iter <= 30; iter++) {
-                    Game g = new Game(i, 2 * i);
-                    for (int a = 1; a <= robots; a++) {
-                        Agent jamesBond = new Agent(a, i);
-                        while (!g.add(jamesBond)) {
-                            jamesBond = new Agent(a, i);
+            System.out.println();
+            System.out.println("**********Test 3 Begins**********");
+            System.out.println();
+            // largest replan size/ total agents + num replans
+            // for densities about 0.2, 0.5, 0.8 for grids 4x4, 5x5, 6x6, 7x7, 30 iterations
+            for (int i = 4; i <= 7; i++) {
+                for (double d = 0.2; d <= 0.8; d += 0.3) {
+                    final int l = i;
+                    int robots = (int) (i * i * d);
+                    List<Result> results = trials(runner, (index, rng) -> {
+                        Result r = new Result();
+                        Game g = randomGame(l, robots, rng, new HashMap<>());
+                        r.metrics = record(g, "test3/" + l + "x" + l + "/" + robots + "/" + index);
+                        r.idSolved = g.run();
+                        r.maxReplan = g.getMaxReplan();
+                        r.replans = g.getNumSATCollisionsResolved() + g.getNumIDCollisionsResolved();
+                        return r;
+                    });
+
+                    int IDtot = 0;
+                    int ReplansTot = 0;
+                    int xCount = 0;
+                    for (Result r : results) {
+                        if (r.idSolved) {
+                            IDtot += r.maxReplan;
+                            ReplansTot += r.replans;
+                            xCount++;
                         }
                     }
-                    // add timer here
-                    long startTime1 = System.currentTimeMillis();
-                    boolean x = g.run();
-                    long endTime1 = System.currentTimeMillis();
-                    if (x) {
-                        IDtot += g.getMaxReplan();
-                        ReplansTot += (g.getNumSATCollisionsResolved() + g.getNumIDCollisionsResolved());
-                        xCount++;
-                    }
+                    System.out.println("Test 3: Complete for " + i + "x" + i + " grid, density: " + d);
+                    System.out.println("Success rate for ID + SAT: " + xCount + "/" + ITERATIONS);
+                    System.out.println("Avg max replan Size out of Agents: " + ((double) IDtot) / xCount + "/" + (robots));
+                    System.out.println("Number of total replans: " + ((double) ReplansTot) / xCount);
+                    System.out.println();
                 }
-                System.out.println("Test 3: Complete for " + i + "x" + i + " grid, density: " + d);
-                System.out.println("Success rate for ID + SAT: " + xCount + "/30");
-                System.out.println("Avg max replan Size out of Agents: " + ((double) IDtot) / xCount + "/" + (robots));
-                System.out.println("Number of total replans: " + ((double) ReplansTot) / xCount);
-                System.out.println();
             }
+            System.out.println("Test 3 Completed");
         }
-        System.out.println("Test 3 Completed");
+        if (metricsFile != null) RunMetrics.write(runs, metricsFile);
     }
 }
@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent trials of an experiment concurrently. Every trial gets its own random number generator seeded
+ * from the base seed and the trial's index, so a run can be reproduced regardless of how many threads it used, and
+ * the results come back in trial order so they can be merged deterministically.
+ */
+
+public class TrialRunner implements AutoCloseable {
+
+    // a single trial of an experiment
+    public interface Trial<T> {
+        T run(int index, Random rng) throws Exception;
+    }
+
+    // seed every trial seed is derived from
+    private long seed;
+    // executor running the trials
+    private ExecutorService executor;
+    // whether the executor was created by this runner and has to be shut down by it
+    private boolean owned;
+
+    // runs trials on a fixed number of platform threads, or with threads set to 0 on virtual threads when the runtime
+    // supports them and one platform thread per processor otherwise
+    public TrialRunner(long seed, int threads) {
+        this.seed = seed;
+        this.executor = threads == 0 ? virtualThreads() : null;
+        if (this.executor == null)
+            this.executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        this.owned = true;
+    }
+
+    // runs trials on an executor owned by the caller, which is not shut down by close
+    public TrialRunner(long seed, ExecutorService executor) {
+        this.seed = seed;
+        this.executor = executor;
+        this.owned = false;
+    }
+
+    // returns an executor with a virtual thread per task if the runtime has them, null otherwise
+    private static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // returns the seed of a trial, consecutive indices give unrelated seeds
+    public long seedOf(int index) {
+        long z = this.seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // runs trials with indices [0, trials) concurrently and returns their results in index order
+    public <T> List<T> run(int trials, Trial<T> trial) throws InterruptedException, ExecutionException {
+        return run(0, trials, trial);
+    }
+
+    // runs trials with indices [first, first + trials) concurrently and returns their results in index order
+    public <T> List<T> run(int first, int trials, Trial<T> trial) throws InterruptedException, ExecutionException {
+        List<Future<T>> futures = new ArrayList<>(trials);
+        for (int i = first; i < first + trials; i++) {
+            final int index = i;
+            futures.add(this.executor.submit(() -> trial.run(index, new Random(seedOf(index)))));
+        }
+        List<T> results = new ArrayList<>(trials);
+        for (Future<T> f : futures)
+            results.add(f.get());
+        return results;
+    }
+
+    // shuts down the executor if it was created by this runner
+    @Override
+    public void close() {
+        if (this.owned) this.executor.shutdown();
+    }
+}
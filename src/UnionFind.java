@@ -1,43 +1,141 @@
-import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
  * Created by Eric He on 4/27/17.
  *
- * A naive disjoint set union data structure to keep track of the merging in the independence detection algorithm.
+ * A disjoint set union data structure to keep track of the merging in the independence detection algorithm. Finding
+ * a representative uses path compression and merging links the smaller group below the larger one, so both take
+ * nearly constant time (Tarjan, "Efficiency of a Good But Not Linear Set Union Algorithm", 1975). The members of
+ * every group are also kept as a circular linked list threaded through an array, two lists are joined in constant
+ * time and a group is listed in time depending on its size rather than on the number of agents.
+ *
+ * Robots can be added while planning goes on, and taken out of their group again in time depending on the size of the
+ * group, so agents can join and leave a game that is already planned.
  */
 
 public class UnionFind {
 
-    // array that keeps track of the robots, robots range from [1, size]
-    private int[] x;
+    // parent of every robot, a representative is its own parent, robots range from [1, size] and index 0 is unused
+    private int[] parent;
+    // number of robots in the group of every representative
+    private int[] count;
+    // next robot in the circular member list of its group
+    private int[] next;
+    // number of groups
+    private int groups;
     // total number of agents, all IDs should be less than or equal to this number
     public int size;
 
-    // basic constructor
+    // basic constructor, every robot starts in a group of its own
     public UnionFind (int size) {
+        this.parent = new int[size + 1];
+        this.count = new int[size + 1];
+        this.next = new int[size + 1];
+        grow(size);
+    }
+
+    // makes room for robots with IDs up to size, each in a group of its own, the arrays at least double when they are
+    // full so adding robots one at a time takes constant amortized time
+    public void grow(int size) {
+        if (size <= this.size) return;
+        if (size >= this.parent.length) {
+            int capacity = Math.max(size + 1, 2 * this.parent.length);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+            this.count = Arrays.copyOf(this.count, capacity);
+            this.next = Arrays.copyOf(this.next, capacity);
+        }
+        for (int i = this.size + 1; i <= size; i++)
+            single(i);
+        this.groups += size - this.size;
         this.size = size;
-        x = new int[size];
-        for (int i = 0; i < size; i++)
-            x[i] = i + 1;
     }
 
-    // merges two robots together and returns all of the robots IDs in both groups as a linked list
-    // naive implementation
-    public LinkedList<Integer> merge (int a, int b) {
-        LinkedList<Integer> group = new LinkedList<>();
+    // puts a robot in a group of its own
+    private void single(int i) {
+        this.parent[i] = i;
+        this.count[i] = 1;
+        this.next[i] = i;
+    }
+
+    // takes a robot out of its group and puts it in a group of its own, the rest of the group stays together. The
+    // trees of different groups never share robots, so only the group of the robot is rebuilt
+    public void isolate(int i) {
+        int[] group = members(i);
+        if (group.length == 1) return;
+        for (int m : group) single(m);
+        this.groups += group.length - 1;
+        int r = 0;
+        for (int m : group) {
+            if (m == i) continue;
+            r = r == 0 ? m : union(r, m);
+        }
+    }
+
+    // merges the groups of two robots and returns the new representative
+    public int union(int a, int b) {
         int p1 = find(a);
         int p2 = find(b);
-        for (int i = 0; i < this.size; i++) {
-            if (x[i] == p1 || x[i] == p2) {
-                group.add(i + 1);
-                if (x[i] == p2) x[i] = p1;
-            }
+        if (p1 == p2) return p1;
+        // the smaller group goes below the larger one
+        if (this.count[p1] < this.count[p2]) {
+            int p = p1;
+            p1 = p2;
+            p2 = p;
+        }
+        this.parent[p2] = p1;
+        this.count[p1] += this.count[p2];
+        // splice the member lists by swapping the successors of the two representatives
+        int n = this.next[p1];
+        this.next[p1] = this.next[p2];
+        this.next[p2] = n;
+        this.groups--;
+        return p1;
+    }
+
+    // merges two robots together and returns all of the robots IDs in both groups
+    public int[] merge (int a, int b) {
+        return members(union(a, b));
+    }
+
+    // returns the group representative of a robot
+    public int find(int i) {
+        int root = i;
+        while (this.parent[root] != root) root = this.parent[root];
+        // point every robot on the way directly at the representative
+        while (this.parent[i] != root) {
+            int p = this.parent[i];
+            this.parent[i] = root;
+            i = p;
         }
+        return root;
+    }
+
+    // returns if two robots are in the same group
+    public boolean connected(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    // returns the number of robots in the group of a robot
+    public int sizeOf(int i) {
+        return this.count[find(i)];
+    }
+
+    // returns the IDs of all robots in the group of a robot in ascending order, so groups are handed to the solvers in
+    // the same order however they were merged
+    public int[] members(int i) {
+        int[] group = new int[sizeOf(i)];
+        int k = 0;
+        int j = i;
+        do {
+            group[k++] = j;
+            j = this.next[j];
+        } while (j != i);
+        Arrays.sort(group);
         return group;
     }
 
-    // helper method that returns the group representative in the array
-    private int find(int i) {
-        return x[i - 1];
+    // returns the number of groups
+    public int groups() {
+        return this.groups;
     }
 }